@@ -0,0 +1,82 @@
+package com.enonic.lib.http.client;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+import javax.net.ssl.SSLSession;
+
+import com.google.common.io.ByteSource;
+
+/**
+ * Response with a fixed body and headers, so that response mapping can be measured without a server.
+ */
+final class BenchmarkResponse
+    implements HttpResponse<Supplier<ByteSource>>
+{
+    private static final HttpRequest REQUEST = HttpRequest.newBuilder( URI.create( "https://www.example.com/path/resource" ) ).build();
+
+    private final HttpHeaders headers;
+
+    private final ByteSource body;
+
+    BenchmarkResponse( final Map<String, List<String>> headers, final byte[] body )
+    {
+        this.headers = HttpHeaders.of( headers, ( name, value ) -> true );
+        this.body = ByteSource.wrap( body );
+    }
+
+    @Override
+    public int statusCode()
+    {
+        return 200;
+    }
+
+    @Override
+    public HttpRequest request()
+    {
+        return REQUEST;
+    }
+
+    @Override
+    public Optional<HttpResponse<Supplier<ByteSource>>> previousResponse()
+    {
+        return Optional.empty();
+    }
+
+    @Override
+    public HttpHeaders headers()
+    {
+        return headers;
+    }
+
+    @Override
+    public Supplier<ByteSource> body()
+    {
+        return () -> body;
+    }
+
+    @Override
+    public Optional<SSLSession> sslSession()
+    {
+        return Optional.empty();
+    }
+
+    @Override
+    public URI uri()
+    {
+        return REQUEST.uri();
+    }
+
+    @Override
+    public HttpClient.Version version()
+    {
+        return HttpClient.Version.HTTP_1_1;
+    }
+}
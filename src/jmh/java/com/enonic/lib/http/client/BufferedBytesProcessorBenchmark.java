@@ -0,0 +1,36 @@
+package com.enonic.lib.http.client;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Buffering of response bodies in memory. Bodies above the in-memory limit stop buffering at the limit, where they would be spilled.
+ */
+@State(Scope.Benchmark)
+public class BufferedBytesProcessorBenchmark
+{
+    @Param({"1024", "65536", "1048576", "16777216"})
+    public int size;
+
+    private byte[] body;
+
+    @Setup
+    public void setup()
+    {
+        body = Payloads.bytes( size );
+    }
+
+    @Benchmark
+    public List<ByteBuffer> read()
+        throws Exception
+    {
+        return HttpRequestHandler.BufferedBytesProcessor.read( new ByteArrayInputStream( body ) ).chunks;
+    }
+}
@@ -0,0 +1,61 @@
+package com.enonic.lib.http.client;
+
+import java.net.URI;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.google.common.io.ByteSource;
+
+/**
+ * Client cache key of each request, with and without credentials and custom certificates of the given size.
+ */
+@State(Scope.Benchmark)
+public class CacheKeyBenchmark
+{
+    private static final URI URI = java.net.URI.create( "https://www.example.com/path" );
+
+    @Param({"plain", "auth", "certificates"})
+    public String params;
+
+    @Param({"4096"})
+    public int certificateSize;
+
+    private HttpClientFactory.ClientParams clientParams;
+
+    @Setup
+    public void setup()
+        throws Exception
+    {
+        final HttpClientFactory.ClientParams.Builder builder = HttpClientFactory.params().connectTimeout( 5000L );
+        if ( params.equals( "auth" ) )
+        {
+            builder.authUser( "user" )
+                .authPassword( "password" )
+                .proxyHost( "proxy.example.com" )
+                .proxyUser( "proxy" )
+                .proxyPassword( "secret" );
+        }
+        else if ( params.equals( "certificates" ) )
+        {
+            builder.certificates( ByteSource.wrap( Payloads.bytes( certificateSize ) ) )
+                .clientCertificate( ByteSource.wrap( Payloads.bytes( certificateSize ) ) );
+        }
+        clientParams = builder.build();
+    }
+
+    @Benchmark
+    public String cacheKey()
+    {
+        return HttpClientFactory.cacheKey( clientParams );
+    }
+
+    @Benchmark
+    public String keyForRequest()
+    {
+        return HttpClientFactory.keyForRequest( URI, clientParams.proxy );
+    }
+}
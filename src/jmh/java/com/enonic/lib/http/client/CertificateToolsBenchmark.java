@@ -0,0 +1,55 @@
+package com.enonic.lib.http.client;
+
+import java.nio.charset.StandardCharsets;
+import java.security.cert.Certificate;
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import okhttp3.tls.HeldCertificate;
+
+/**
+ * Parsing of PEM certificates and client keys, done for each request that passes them.
+ */
+@State(Scope.Benchmark)
+public class CertificateToolsBenchmark
+{
+    @Param({"1", "10"})
+    public int certificates;
+
+    private byte[] trusted;
+
+    private byte[] client;
+
+    @Setup
+    public void setup()
+    {
+        final HeldCertificate root = new HeldCertificate.Builder().certificateAuthority( 0 ).commonName( "root" ).build();
+        final StringBuilder pem = new StringBuilder();
+        for ( int i = 0; i < certificates; i++ )
+        {
+            pem.append( new HeldCertificate.Builder().commonName( "server" + i ).signedBy( root ).build().certificatePem() );
+        }
+        trusted = pem.toString().getBytes( StandardCharsets.ISO_8859_1 );
+
+        final HeldCertificate clientCertificate = new HeldCertificate.Builder().commonName( "client" ).signedBy( root ).build();
+        client = ( clientCertificate.certificatePem() + '\n' + clientCertificate.privateKeyPkcs8Pem() ).getBytes(
+            StandardCharsets.ISO_8859_1 );
+    }
+
+    @Benchmark
+    public List<Certificate> loadCertificates()
+    {
+        return CertificateTools.loadCertificates( trusted );
+    }
+
+    @Benchmark
+    public CertWithKey loadClientCertificate()
+    {
+        return CertificateTools.loadClientCertificate( client );
+    }
+}
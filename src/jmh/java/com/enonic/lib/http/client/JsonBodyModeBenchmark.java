@@ -0,0 +1,137 @@
+package com.enonic.lib.http.client;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.enonic.xp.script.serializer.MapGenerator;
+
+/**
+ * Serialization of a JSON response for the script: bodyMode 'json' parses the body into maps and lists,
+ * bodyMode 'auto' hands the body over as a string.
+ */
+@State(Scope.Benchmark)
+public class JsonBodyModeBenchmark
+{
+    @Param({"10240", "102400", "1048576", "5242880"})
+    public int size;
+
+    @Param({"AUTO", "JSON"})
+    public String bodyMode;
+
+    private BenchmarkResponse response;
+
+    private BodyMode mode;
+
+    @Setup
+    public void setup()
+    {
+        response = new BenchmarkResponse( Map.of( "content-type", List.of( "application/json" ) ), payload( size ) );
+        mode = BodyMode.valueOf( bodyMode );
+    }
+
+    @Benchmark
+    public Object serialize()
+        throws Exception
+    {
+        final ObjectMapGenerator gen = new ObjectMapGenerator();
+        new ResponseMapper( response, mode ).serialize( gen );
+        return gen.root;
+    }
+
+    private static byte[] payload( final int size )
+    {
+        final StringBuilder sb = new StringBuilder( size + 128 ).append( "{\"items\":[" );
+        for ( int i = 0; sb.length() < size; i++ )
+        {
+            if ( i > 0 )
+            {
+                sb.append( ',' );
+            }
+            sb.append( "{\"id\":" ).append( i ).append( ",\"name\":\"item " ).append( i ).append( "\",\"price\":" ).append( i * 1.5 )
+                .append( ",\"tags\":[\"a\",\"b\"],\"active\":" ).append( i % 2 == 0 ).append( '}' );
+        }
+        return sb.append( "]}" ).toString().getBytes( StandardCharsets.UTF_8 );
+    }
+
+    /**
+     * Builds plain maps and lists, as the script engine builds its objects and arrays.
+     */
+    private static final class ObjectMapGenerator
+        implements MapGenerator
+    {
+        private final Map<String, Object> root = new LinkedHashMap<>();
+
+        private final Deque<Object> stack = new ArrayDeque<>( List.of( root ) );
+
+        @Override
+        public MapGenerator map()
+        {
+            return push( null, new LinkedHashMap<String, Object>() );
+        }
+
+        @Override
+        public MapGenerator map( final String name )
+        {
+            return push( name, new LinkedHashMap<String, Object>() );
+        }
+
+        @Override
+        public MapGenerator array()
+        {
+            return push( null, new ArrayList<>() );
+        }
+
+        @Override
+        public MapGenerator array( final String name )
+        {
+            return push( name, new ArrayList<>() );
+        }
+
+        @Override
+        public MapGenerator end()
+        {
+            stack.pop();
+            return this;
+        }
+
+        @Override
+        public MapGenerator value( final Object value )
+        {
+            return value( null, value );
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public MapGenerator value( final String name, final Object value )
+        {
+            final Object current = stack.peek();
+            if ( current instanceof List )
+            {
+                ( (List<Object>) current ).add( value );
+            }
+            else
+            {
+                ( (Map<String, Object>) current ).put( name, value );
+            }
+            return this;
+        }
+
+        private MapGenerator push( final String name, final Object container )
+        {
+            value( name, container );
+            stack.push( container );
+            return this;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.enonic.lib.http.client;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+final class Payloads
+{
+    private Payloads()
+    {
+    }
+
+    /**
+     * Pseudo-random bytes, the same for each run.
+     */
+    static byte[] bytes( final int size )
+    {
+        final byte[] bytes = new byte[size];
+        new Random( size ).nextBytes( bytes );
+        return bytes;
+    }
+
+    /**
+     * ASCII text of the given size.
+     */
+    static byte[] text( final int size )
+    {
+        final StringBuilder sb = new StringBuilder( size + 64 );
+        for ( int i = 0; sb.length() < size; i++ )
+        {
+            sb.append( "line " ).append( i ).append( " of the benchmark payload\n" );
+        }
+        sb.setLength( size );
+        return sb.toString().getBytes( StandardCharsets.US_ASCII );
+    }
+}
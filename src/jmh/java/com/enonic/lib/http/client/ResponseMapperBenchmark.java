@@ -0,0 +1,44 @@
+package com.enonic.lib.http.client;
+
+import java.util.List;
+import java.util.Map;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Mapping of a buffered response: header decoding, body decoding to a string and cookie parsing.
+ */
+@State(Scope.Benchmark)
+public class ResponseMapperBenchmark
+{
+    @Param({"1024", "65536", "1048576"})
+    public int size;
+
+    @Param({"AUTO", "BYTES"})
+    public String bodyMode;
+
+    private BenchmarkResponse response;
+
+    private BodyMode mode;
+
+    @Setup
+    public void setup()
+    {
+        response = new BenchmarkResponse( Map.of( "content-type", List.of( "text/plain; charset=utf-8" ), "content-length",
+                                                  List.of( Integer.toString( size ) ), "set-cookie",
+                                                  List.of( "session=abc123; Path=/; HttpOnly; Secure", "theme=dark; Max-Age=3600" ) ),
+                                          Payloads.text( size ) );
+        mode = BodyMode.valueOf( bodyMode );
+    }
+
+    @Benchmark
+    public ResponseMapper map()
+        throws Exception
+    {
+        return new ResponseMapper( response, mode );
+    }
+}
@@ -0,0 +1,127 @@
+package com.enonic.lib.http.client;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.google.common.io.ByteSource;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Upload of file-backed request bodies, sent with ofFile, against the same file sent as a plain stream.
+ * The local server drains the body without storing it, so the numbers reflect the client side only.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class UploadBenchmark
+{
+    @Param({"67108864", "1073741824", "4294967296"})
+    public long size;
+
+    @Param({"file", "stream"})
+    public String source;
+
+    private HttpServer server;
+
+    private ExecutorService serverExecutor;
+
+    private HttpClient client;
+
+    private URI uri;
+
+    private Path file;
+
+    private ByteSource body;
+
+    @Setup
+    public void setup()
+        throws IOException
+    {
+        server = HttpServer.create( new InetSocketAddress( InetAddress.getLoopbackAddress(), 0 ), 0 );
+        serverExecutor = Executors.newCachedThreadPool();
+        server.setExecutor( serverExecutor );
+        server.createContext( "/upload", exchange -> {
+            long received = 0;
+            try (InputStream is = exchange.getRequestBody())
+            {
+                final byte[] buf = new byte[64 * 1024];
+                int n;
+                while ( ( n = is.read( buf ) ) != -1 )
+                {
+                    received += n;
+                }
+            }
+            final byte[] response = Long.toString( received ).getBytes();
+            exchange.sendResponseHeaders( 200, response.length );
+            try (OutputStream os = exchange.getResponseBody())
+            {
+                os.write( response );
+            }
+        } );
+        server.start();
+
+        uri = URI.create( "http://127.0.0.1:" + server.getAddress().getPort() + "/upload" );
+        client = HttpClient.newBuilder().version( HttpClient.Version.HTTP_1_1 ).build();
+
+        file = Files.createTempFile( "xphttp-upload", ".tmp" );
+        try (RandomAccessFile raf = new RandomAccessFile( file.toFile(), "rw" ))
+        {
+            raf.setLength( size );
+        }
+        final ByteSource fileSource = new RefPathByteSource( file );
+        body = "file".equals( source ) ? fileSource : new ByteSource()
+        {
+            @Override
+            public InputStream openStream()
+                throws IOException
+            {
+                return fileSource.openStream();
+            }
+        };
+    }
+
+    @TearDown
+    public void tearDown()
+        throws IOException
+    {
+        server.stop( 0 );
+        serverExecutor.shutdownNow();
+        Files.deleteIfExists( file );
+    }
+
+    @Benchmark
+    public String upload()
+        throws Exception
+    {
+        final HttpRequest request = HttpRequest.newBuilder( uri ).POST( HttpRequestFactory.byteSourceBodyPublisher( body ) ).build();
+        final String received = client.send( request, HttpResponse.BodyHandlers.ofString() ).body();
+        if ( !Long.toString( size ).equals( received ) )
+        {
+            throw new IllegalStateException( "Server received " + received + " of " + size + " bytes" );
+        }
+        return received;
+    }
+}
@@ -0,0 +1,60 @@
+package com.enonic.lib.http.client;
+
+import java.net.HttpCookie;
+import java.net.URI;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Form encoding, query parameters and cookie parsing, with the given number of parameters and cookies.
+ */
+@State(Scope.Benchmark)
+public class UtilsBenchmark
+{
+    private static final URI URI = java.net.URI.create( "https://www.example.com/path?existing=1#fragment" );
+
+    @Param({"1", "10", "100"})
+    public int count;
+
+    private Map<String, String> params;
+
+    private BenchmarkResponse response;
+
+    @Setup
+    public void setup()
+    {
+        params = new LinkedHashMap<>();
+        final String[] cookies = new String[count];
+        for ( int i = 0; i < count; i++ )
+        {
+            params.put( "param " + i, "value & more " + i );
+            cookies[i] = "cookie" + i + "=value" + i + "; Path=/; Max-Age=3600; HttpOnly";
+        }
+        response = new BenchmarkResponse( Map.of( "set-cookie", List.of( cookies ) ), new byte[0] );
+    }
+
+    @Benchmark
+    public String formUrlEncoded()
+    {
+        return Utils.formUrlEncoded( params );
+    }
+
+    @Benchmark
+    public URI addQueryParams()
+    {
+        return Utils.addQueryParams( URI, params );
+    }
+
+    @Benchmark
+    public List<HttpCookie> getCookies()
+    {
+        return Utils.getCookies( response );
+    }
+}
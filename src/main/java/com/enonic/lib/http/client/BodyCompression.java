@@ -0,0 +1,255 @@
+package com.enonic.lib.http.client;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.util.Enumeration;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterInputStream;
+
+import com.google.common.io.CountingInputStream;
+
+import io.airlift.compress.zstd.ZstdOutputStream;
+
+/**
+ * Content coding applied to outgoing request bodies. Bodies are compressed as they are read, they are never buffered.
+ */
+enum BodyCompression
+{
+    GZIP( "gzip" )
+        {
+            @Override
+            InputStream compress( final InputStream source )
+            {
+                return gzip( source );
+            }
+        },
+
+    DEFLATE( "deflate" )
+        {
+            @Override
+            InputStream compress( final InputStream source )
+            {
+                return new DeflaterInputStream( source );
+            }
+        },
+
+    ZSTD( "zstd" )
+        {
+            @Override
+            InputStream compress( final InputStream source )
+            {
+                return new EncodingInputStream( source, ZstdOutputStream::new );
+            }
+        };
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+    private final String contentEncoding;
+
+    BodyCompression( final String contentEncoding )
+    {
+        this.contentEncoding = contentEncoding;
+    }
+
+    String contentEncoding()
+    {
+        return contentEncoding;
+    }
+
+    /**
+     * @return stream of the compressed content, closing it closes the source
+     */
+    abstract InputStream compress( InputStream source );
+
+    static BodyCompression from( final String value )
+    {
+        if ( value == null || value.isBlank() )
+        {
+            return null;
+        }
+        try
+        {
+            return BodyCompression.valueOf( value.trim().toUpperCase( Locale.ROOT ) );
+        }
+        catch ( IllegalArgumentException e )
+        {
+            throw new IllegalArgumentException( "Invalid compressBody: " + value );
+        }
+    }
+
+    /**
+     * GZIP member (RFC 1952) around a raw deflate stream. The trailer is built only after the deflate stream is exhausted,
+     * when CRC and size of the source are known.
+     */
+    private static InputStream gzip( final InputStream source )
+    {
+        final CountingInputStream counting = new CountingInputStream( source );
+        final CRC32 crc = new CRC32();
+        final Deflater deflater = new Deflater( Deflater.DEFAULT_COMPRESSION, true );
+        final InputStream deflated = new DeflaterInputStream( new CheckedInputStream( counting, crc ), deflater )
+        {
+            @Override
+            public void close()
+                throws IOException
+            {
+                try
+                {
+                    super.close();
+                }
+                finally
+                {
+                    deflater.end();
+                }
+            }
+        };
+
+        final Enumeration<InputStream> parts = new Enumeration<>()
+        {
+            private int next;
+
+            @Override
+            public boolean hasMoreElements()
+            {
+                return next < 3;
+            }
+
+            @Override
+            public InputStream nextElement()
+            {
+                switch ( next++ )
+                {
+                    case 0:
+                        return new ByteArrayInputStream( GZIP_HEADER );
+                    case 1:
+                        return deflated;
+                    case 2:
+                        return gzipTrailer( crc, counting );
+                    default:
+                        throw new NoSuchElementException();
+                }
+            }
+        };
+        return new SequenceInputStream( parts );
+    }
+
+    private static InputStream gzipTrailer( final CRC32 crc, final CountingInputStream counting )
+    {
+        final long value = crc.getValue();
+        final long size = counting.getCount();
+        return new ByteArrayInputStream(
+            new byte[]{(byte) value, (byte) ( value >> 8 ), (byte) ( value >> 16 ), (byte) ( value >> 24 ), (byte) size, (byte) ( size >> 8 ),
+                (byte) ( size >> 16 ), (byte) ( size >> 24 )} );
+    }
+
+    private interface Encoder
+    {
+        OutputStream open( OutputStream target )
+            throws IOException;
+    }
+
+    /**
+     * Pulls the source through an encoder that is only available as an output stream. Each read encodes the next block of the
+     * source into a reused buffer, so at most one block of encoded output is held in memory.
+     */
+    private static final class EncodingInputStream
+        extends InputStream
+    {
+        private final InputStream source;
+
+        private final Encoder encoder;
+
+        private final byte[] block = new byte[BUFFER_SIZE];
+
+        private final EncodedBuffer encoded = new EncodedBuffer();
+
+        private OutputStream encoding;
+
+        private int position;
+
+        private boolean finished;
+
+        EncodingInputStream( final InputStream source, final Encoder encoder )
+        {
+            this.source = source;
+            this.encoder = encoder;
+        }
+
+        @Override
+        public int read()
+            throws IOException
+        {
+            final byte[] b = new byte[1];
+            return read( b, 0, 1 ) == -1 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read( final byte[] b, final int off, final int len )
+            throws IOException
+        {
+            if ( len == 0 )
+            {
+                return 0;
+            }
+            while ( position == encoded.size() )
+            {
+                if ( finished )
+                {
+                    return -1;
+                }
+                encoded.reset();
+                position = 0;
+                encodeBlock();
+            }
+            final int n = Math.min( len, encoded.size() - position );
+            System.arraycopy( encoded.array(), position, b, off, n );
+            position += n;
+            return n;
+        }
+
+        private void encodeBlock()
+            throws IOException
+        {
+            if ( encoding == null )
+            {
+                encoding = encoder.open( encoded );
+            }
+            final int n = source.read( block );
+            if ( n == -1 )
+            {
+                // writes the end of the encoded stream
+                encoding.close();
+                finished = true;
+            }
+            else
+            {
+                encoding.write( block, 0, n );
+            }
+        }
+
+        @Override
+        public void close()
+            throws IOException
+        {
+            source.close();
+        }
+    }
+
+    private static final class EncodedBuffer
+        extends ByteArrayOutputStream
+    {
+        byte[] array()
+        {
+            return buf;
+        }
+    }
+}
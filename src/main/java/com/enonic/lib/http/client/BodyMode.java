@@ -0,0 +1,52 @@
+package com.enonic.lib.http.client;
+
+import java.util.Locale;
+
+enum BodyMode
+{
+    /**
+     * Body is fully buffered, text bodies are also decoded to a string.
+     */
+    AUTO,
+
+    /**
+     * Body is read and discarded.
+     */
+    NONE,
+
+    /**
+     * Body is fully buffered, but never decoded to a string.
+     */
+    BYTES,
+
+    /**
+     * Body is fully buffered and always decoded to a string, using UTF-8 if the content type has no charset.
+     */
+    STRING,
+
+    /**
+     * Body is fully buffered and parsed as JSON directly into the script object. Non-JSON content types are decoded as in {@link #AUTO}.
+     */
+    JSON,
+
+    /**
+     * Request returns as soon as headers are received, body is available as a one-shot stream.
+     */
+    STREAM;
+
+    static BodyMode from( final String value )
+    {
+        if ( value == null || value.isBlank() )
+        {
+            return AUTO;
+        }
+        try
+        {
+            return BodyMode.valueOf( value.trim().toUpperCase( Locale.ROOT ) );
+        }
+        catch ( IllegalArgumentException e )
+        {
+            throw new IllegalArgumentException( "Invalid bodyMode: " + value );
+        }
+    }
+}
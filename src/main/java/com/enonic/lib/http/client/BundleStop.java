@@ -0,0 +1,72 @@
+package com.enonic.lib.http.client;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.FrameworkUtil;
+import org.osgi.framework.SynchronousBundleListener;
+
+/**
+ * Runs cleanup actions when the bundle of the app the library is embedded in stops, before its class loader is released.
+ * MBeans left registered or threads left running would keep the class loader of the stopped app reachable.
+ * Outside OSGi the actions never run.
+ */
+final class BundleStop
+{
+    private static final List<Runnable> ACTIONS = new CopyOnWriteArrayList<>();
+
+    static
+    {
+        listen();
+    }
+
+    private BundleStop()
+    {
+    }
+
+    static void register( final Runnable action )
+    {
+        ACTIONS.add( action );
+    }
+
+    private static void runAll()
+    {
+        for ( Runnable action : ACTIONS )
+        {
+            try
+            {
+                action.run();
+            }
+            catch ( RuntimeException e )
+            {
+                // the other actions still run
+            }
+        }
+    }
+
+    private static void listen()
+    {
+        try
+        {
+            final Bundle bundle = FrameworkUtil.getBundle( BundleStop.class );
+            final BundleContext context = bundle != null ? bundle.getBundleContext() : null;
+            if ( context != null )
+            {
+                // synchronous, so the actions have run before the class loader of the bundle is released
+                context.addBundleListener( (SynchronousBundleListener) event -> {
+                    if ( event.getBundle() == bundle && event.getType() == BundleEvent.STOPPING )
+                    {
+                        runAll();
+                    }
+                } );
+            }
+        }
+        catch ( LinkageError | RuntimeException e )
+        {
+            // not running in OSGi, nothing to listen to
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.enonic.lib.http.client;
+
+import java.util.List;
+
+import com.enonic.xp.script.serializer.MapGenerator;
+import com.enonic.xp.script.serializer.MapSerializable;
+
+/**
+ * Snapshot of a cached HTTP client: its id, settings without credentials, age and the destinations it served.
+ */
+public final class CachedClientInfo
+    implements MapSerializable
+{
+    private final String id;
+
+    private final String identity;
+
+    private final long createdAt;
+
+    private final List<Destination> destinations;
+
+    CachedClientInfo( final String id, final String identity, final long createdAt, final List<Destination> destinations )
+    {
+        this.id = id;
+        this.identity = identity;
+        this.createdAt = createdAt;
+        this.destinations = destinations;
+    }
+
+    public String getId()
+    {
+        return id;
+    }
+
+    public String getIdentity()
+    {
+        return identity;
+    }
+
+    public long getCreatedAt()
+    {
+        return createdAt;
+    }
+
+    public long getAgeMillis()
+    {
+        return System.currentTimeMillis() - createdAt;
+    }
+
+    public List<Destination> getDestinations()
+    {
+        return destinations;
+    }
+
+    @Override
+    public void serialize( final MapGenerator gen )
+    {
+        gen.value( "id", id );
+        gen.value( "identity", identity );
+        gen.value( "createdAt", createdAt );
+        gen.value( "ageMillis", getAgeMillis() );
+        gen.array( "destinations" );
+        for ( Destination destination : destinations )
+        {
+            gen.map();
+            gen.value( "destination", destination.destination );
+            gen.value( "lastAccess", destination.lastAccess );
+            gen.value( "idleMillis", destination.getIdleMillis() );
+            gen.value( "inFlight", destination.inFlight );
+            gen.end();
+        }
+        gen.end();
+    }
+
+    public static final class Destination
+    {
+        private final String destination;
+
+        private final long lastAccess;
+
+        private final long inFlight;
+
+        Destination( final String destination, final long lastAccess, final long inFlight )
+        {
+            this.destination = destination;
+            this.lastAccess = lastAccess;
+            this.inFlight = inFlight;
+        }
+
+        public String getDestination()
+        {
+            return destination;
+        }
+
+        public long getLastAccess()
+        {
+            return lastAccess;
+        }
+
+        public long getIdleMillis()
+        {
+            return System.currentTimeMillis() - lastAccess;
+        }
+
+        /**
+         * @return exchanges to the destination waiting for a response, over all clients
+         */
+        public long getInFlight()
+        {
+            return inFlight;
+        }
+    }
+}
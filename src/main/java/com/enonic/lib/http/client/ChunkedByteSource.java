@@ -0,0 +1,190 @@
+package com.enonic.lib.http.client;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.google.common.base.Optional;
+import com.google.common.io.ByteSource;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CharSource;
+
+/**
+ * Response body buffered as heap chunks, optionally followed by the rest of the body spilled to a file.
+ * Slices and buffer views share the underlying chunks and file, no bytes are copied.
+ */
+public final class ChunkedByteSource
+    extends ByteSource
+{
+    private final List<ByteBuffer> chunks;
+
+    private final long heapSize;
+
+    private final RefPathByteSource file;
+
+    ChunkedByteSource( final List<ByteBuffer> chunks, final RefPathByteSource file )
+    {
+        this.chunks = Collections.unmodifiableList( chunks );
+        this.heapSize = chunks.stream().mapToLong( ByteBuffer::remaining ).sum();
+        this.file = file;
+    }
+
+    List<ByteBuffer> getChunks()
+    {
+        return chunks;
+    }
+
+    RefPathByteSource getFile()
+    {
+        return file;
+    }
+
+    @Override
+    public InputStream openStream()
+        throws IOException
+    {
+        final List<ByteSource> sources = new ArrayList<>( chunks.size() + 1 );
+        for ( ByteBuffer chunk : chunks )
+        {
+            sources.add( ByteSource.wrap( chunk.array() ).slice( chunk.arrayOffset() + chunk.position(), chunk.remaining() ) );
+        }
+        if ( file != null )
+        {
+            sources.add( file );
+        }
+        return ByteSource.concat( sources ).openStream();
+    }
+
+    @Override
+    public CharSource asCharSource( final Charset charset )
+    {
+        return new ChunkedCharSource( this, charset );
+    }
+
+    @Override
+    public boolean isEmpty()
+        throws IOException
+    {
+        return heapSize == 0 && ( file == null || file.isEmpty() );
+    }
+
+    @Override
+    public long size()
+        throws IOException
+    {
+        return file == null ? heapSize : heapSize + file.size();
+    }
+
+    @Override
+    public Optional<Long> sizeIfKnown()
+    {
+        if ( file == null )
+        {
+            return Optional.of( heapSize );
+        }
+        final Optional<Long> fileSize = file.sizeIfKnown();
+        return fileSize.isPresent() ? Optional.of( heapSize + fileSize.get() ) : Optional.absent();
+    }
+
+    @Override
+    public byte[] read()
+        throws IOException
+    {
+        final long size = size();
+        if ( size > Integer.MAX_VALUE - 8 )
+        {
+            throw new OutOfMemoryError( "Body is too large to fit in a byte array: " + size + " bytes" );
+        }
+        final byte[] bytes = new byte[(int) size];
+        int pos = 0;
+        for ( ByteBuffer chunk : chunks )
+        {
+            final int len = chunk.remaining();
+            chunk.duplicate().get( bytes, pos, len );
+            pos += len;
+        }
+        if ( file != null )
+        {
+            try (InputStream is = file.openStream())
+            {
+                ByteStreams.readFully( is, bytes, pos, bytes.length - pos );
+            }
+        }
+        return bytes;
+    }
+
+    @Override
+    public long copyTo( final OutputStream output )
+        throws IOException
+    {
+        for ( ByteBuffer chunk : chunks )
+        {
+            output.write( chunk.array(), chunk.arrayOffset() + chunk.position(), chunk.remaining() );
+        }
+        return file == null ? heapSize : heapSize + file.copyTo( output );
+    }
+
+    /**
+     * Returns a view of the given range. Heap chunks and file regions are shared with this source.
+     */
+    @Override
+    public ByteSource slice( final long offset, final long length )
+    {
+        if ( offset < 0 || length < 0 )
+        {
+            throw new IllegalArgumentException( "offset and length must be non-negative" );
+        }
+
+        if ( offset >= heapSize && file != null )
+        {
+            return file.slice( offset - heapSize, length );
+        }
+
+        final List<ByteBuffer> sliced = new ArrayList<>();
+        long skip = offset;
+        long remaining = length;
+        for ( ByteBuffer chunk : chunks )
+        {
+            if ( remaining == 0 )
+            {
+                break;
+            }
+            final int chunkSize = chunk.remaining();
+            if ( skip >= chunkSize )
+            {
+                skip -= chunkSize;
+                continue;
+            }
+            final int len = (int) Math.min( chunkSize - skip, remaining );
+            sliced.add( chunk.duplicate().position( chunk.position() + (int) skip ).limit( chunk.position() + (int) skip + len ).slice() );
+            remaining -= len;
+            skip = 0;
+        }
+
+        final RefPathByteSource fileSlice = file != null && remaining > 0 ? file.slice( 0, remaining ) : null;
+        return new ChunkedByteSource( sliced, fileSlice );
+    }
+
+    /**
+     * Returns the content as a list of read-only buffers: the heap chunks followed by the memory-mapped file, if the body was spilled.
+     */
+    public List<ByteBuffer> asByteBuffers()
+        throws IOException
+    {
+        final List<ByteBuffer> buffers = new ArrayList<>( chunks.size() + 1 );
+        for ( ByteBuffer chunk : chunks )
+        {
+            buffers.add( chunk.asReadOnlyBuffer() );
+        }
+        if ( file != null )
+        {
+            buffers.add( file.asByteBuffer() );
+        }
+        return buffers;
+    }
+}
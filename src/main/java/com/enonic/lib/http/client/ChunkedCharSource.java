@@ -0,0 +1,171 @@
+package com.enonic.lib.http.client;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+
+import com.google.common.io.CharSource;
+
+/**
+ * CharSource over a {@link ChunkedByteSource} that decodes the whole body in a single pass over the chunk buffers.
+ */
+final class ChunkedCharSource
+    extends CharSource
+{
+    /**
+     * Charsets the String constructor decodes with intrinsified loops, including the ASCII-only fast path.
+     */
+    private static final Set<Charset> INTRINSIC_CHARSETS =
+        Set.of( StandardCharsets.UTF_8, StandardCharsets.US_ASCII, StandardCharsets.ISO_8859_1 );
+
+    private static final int FILE_BUFFER_SIZE = 64 * 1024;
+
+    private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+    private final ChunkedByteSource source;
+
+    private final Charset charset;
+
+    ChunkedCharSource( final ChunkedByteSource source, final Charset charset )
+    {
+        this.source = source;
+        this.charset = charset;
+    }
+
+    @Override
+    public Reader openStream()
+        throws IOException
+    {
+        return new InputStreamReader( source.openStream(), charset );
+    }
+
+    @Override
+    public String read()
+        throws IOException
+    {
+        final long size = source.size();
+        if ( size == 0 )
+        {
+            return "";
+        }
+        if ( size > MAX_ARRAY_SIZE )
+        {
+            throw new IOException( "Body is too large to be decoded to a string: " + size + " bytes" );
+        }
+        return INTRINSIC_CHARSETS.contains( charset ) ? readIntrinsic( (int) size ) : readDecoded( (int) size );
+    }
+
+    /**
+     * Gathers the chunks into a single exactly sized array and lets the String constructor decode it.
+     * For ASCII-only UTF-8 content this is a plain copy.
+     */
+    private String readIntrinsic( final int size )
+        throws IOException
+    {
+        final byte[] bytes = new byte[size];
+        final ByteBuffer target = ByteBuffer.wrap( bytes );
+        for ( ByteBuffer chunk : source.getChunks() )
+        {
+            target.put( chunk.duplicate() );
+        }
+        int length = target.position();
+        if ( source.getFile() != null )
+        {
+            // the file part may be a slice of the spill file, only its stream is bounded to the slice
+            try (InputStream is = source.getFile().openStream())
+            {
+                length += is.readNBytes( bytes, length, size - length );
+            }
+        }
+        return new String( bytes, 0, length, charset );
+    }
+
+    private String readDecoded( final int size )
+        throws IOException
+    {
+        final Decoder decoder = new Decoder( charset, size );
+        for ( ByteBuffer chunk : source.getChunks() )
+        {
+            decoder.feed( chunk.duplicate() );
+        }
+        if ( source.getFile() != null )
+        {
+            try (InputStream is = source.getFile().openStream())
+            {
+                final byte[] buffer = new byte[FILE_BUFFER_SIZE];
+                int n;
+                while ( ( n = is.read( buffer ) ) != -1 )
+                {
+                    decoder.feed( ByteBuffer.wrap( buffer, 0, n ) );
+                }
+            }
+        }
+        return decoder.finish();
+    }
+
+    private static final class Decoder
+    {
+        private final CharsetDecoder decoder;
+
+        // bytes of a character split between two buffers
+        private final ByteBuffer carry = ByteBuffer.allocate( 64 );
+
+        private CharBuffer out;
+
+        Decoder( final Charset charset, final int size )
+        {
+            this.decoder =
+                charset.newDecoder().onMalformedInput( CodingErrorAction.REPLACE ).onUnmappableCharacter( CodingErrorAction.REPLACE );
+            final long expectedChars = (long) Math.ceil( size * (double) decoder.averageCharsPerByte() ) + 16;
+            this.out = CharBuffer.allocate( (int) Math.min( MAX_ARRAY_SIZE, expectedChars ) );
+        }
+
+        void feed( final ByteBuffer in )
+        {
+            while ( carry.position() > 0 && in.hasRemaining() )
+            {
+                carry.put( in.get() );
+                carry.flip();
+                decode( carry, false );
+                carry.compact();
+            }
+            decode( in, false );
+            carry.put( in );
+        }
+
+        String finish()
+        {
+            carry.flip();
+            decode( carry, true );
+            while ( decoder.flush( out ).isOverflow() )
+            {
+                grow();
+            }
+            return new String( out.array(), 0, out.position() );
+        }
+
+        private void decode( final ByteBuffer in, final boolean endOfInput )
+        {
+            while ( decoder.decode( in, out, endOfInput ).isOverflow() )
+            {
+                grow();
+            }
+        }
+
+        private void grow()
+        {
+            final CharBuffer bigger = CharBuffer.allocate( (int) Math.min( MAX_ARRAY_SIZE, out.capacity() * 2L ) );
+            out.flip();
+            bigger.put( out );
+            out = bigger;
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.enonic.lib.http.client;
+
+import java.util.List;
+
+final class ClientCache
+    implements ClientCacheMXBean
+{
+    static final String OBJECT_NAME = MBeans.name( "ClientCache", null );
+
+    @Override
+    public int getSize()
+    {
+        return HttpClientFactory.cacheSize();
+    }
+
+    @Override
+    public long getCreations()
+    {
+        return HttpClientFactory.creations();
+    }
+
+    @Override
+    public long getEvictions()
+    {
+        return HttpClientFactory.evictions();
+    }
+
+    @Override
+    public List<CachedClientInfo> getClients()
+    {
+        return HttpClientFactory.cachedClients();
+    }
+
+    @Override
+    public boolean evict( final String id )
+    {
+        return HttpClientFactory.evict( id );
+    }
+
+    @Override
+    public int flush()
+    {
+        return HttpClientFactory.flush();
+    }
+}
@@ -0,0 +1,40 @@
+package com.enonic.lib.http.client;
+
+import java.util.List;
+
+import com.enonic.xp.script.serializer.MapGenerator;
+import com.enonic.xp.script.serializer.MapSerializable;
+
+public final class ClientCacheHandler
+{
+    @SuppressWarnings("unused")
+    public MapSerializable clients()
+    {
+        final List<CachedClientInfo> clients = HttpClientFactory.cachedClients();
+        return gen -> serialize( clients, gen );
+    }
+
+    @SuppressWarnings("unused")
+    public boolean evict( final String id )
+    {
+        return HttpClientFactory.evict( id );
+    }
+
+    @SuppressWarnings("unused")
+    public int flush()
+    {
+        return HttpClientFactory.flush();
+    }
+
+    private static void serialize( final List<CachedClientInfo> clients, final MapGenerator gen )
+    {
+        gen.array( "clients" );
+        for ( CachedClientInfo client : clients )
+        {
+            gen.map();
+            client.serialize( gen );
+            gen.end();
+        }
+        gen.end();
+    }
+}
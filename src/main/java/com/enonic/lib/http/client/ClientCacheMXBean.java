@@ -0,0 +1,21 @@
+package com.enonic.lib.http.client;
+
+import java.util.List;
+
+/**
+ * JMX view of the HTTP client cache, with operations to evict a single client or flush the cache without restarting the application.
+ */
+public interface ClientCacheMXBean
+{
+    int getSize();
+
+    long getCreations();
+
+    long getEvictions();
+
+    List<CachedClientInfo> getClients();
+
+    boolean evict( String id );
+
+    int flush();
+}
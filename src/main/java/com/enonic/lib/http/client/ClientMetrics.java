@@ -0,0 +1,534 @@
+package com.enonic.lib.http.client;
+
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import com.github.mizosoft.methanol.MimeBodyPublisher;
+import com.github.mizosoft.methanol.MoreBodyPublishers;
+
+/**
+ * Aggregated metrics per destination, keyed like the client cache: scheme, host and port, or proxy.
+ * Exchanges record into lock-free counters and HdrHistogram recorders, snapshots are taken on demand.
+ * Each destination is also registered as an MXBean, see {@link MBeans}.
+ * <p>
+ * Destinations without exchanges for the idle timeout are removed, and the least recently used idle ones once there are more
+ * than the maximum, so an app calling many hosts doesn't keep metrics and MBeans for all of them. A destination that is called
+ * again after its removal starts from zero.
+ */
+final class ClientMetrics
+{
+    /**
+     * Length of the window the rolling p99 latency is computed over.
+     */
+    private static final long WINDOW_NANOS = TimeUnit.SECONDS.toNanos( 60 );
+
+    /**
+     * Windows with fewer exchanges don't replace the rolling p99, it would be too noisy.
+     */
+    private static final int MIN_WINDOW_COUNT = 100;
+
+    private static final long IDLE_TIMEOUT_NANOS =
+        TimeUnit.MILLISECONDS.toNanos( Long.getLong( "com.enonic.lib.http.client.metrics.idleTimeout", 3_600_000 ) );
+
+    private static final int MAX_DESTINATIONS = Integer.getInteger( "com.enonic.lib.http.client.metrics.maxDestinations", 1000 );
+
+    private static final ConcurrentMap<String, Destination> DESTINATIONS = new ConcurrentHashMap<>();
+
+    private ClientMetrics()
+    {
+    }
+
+    static Destination destination( final String key )
+    {
+        final Destination existing = DESTINATIONS.get( key );
+        if ( existing != null )
+        {
+            return existing;
+        }
+        final Destination destination = DESTINATIONS.computeIfAbsent( key, ClientMetrics::register );
+        // only a new destination can push the map over its maximum, and idle ones are found often enough on the way
+        evict( IDLE_TIMEOUT_NANOS, MAX_DESTINATIONS );
+        return destination;
+    }
+
+    /**
+     * @return metrics of the destination, or null if nothing was sent to it yet
+     */
+    static Destination find( final String key )
+    {
+        return DESTINATIONS.get( key );
+    }
+
+    static List<Destination> destinations()
+    {
+        return new ArrayList<>( DESTINATIONS.values() );
+    }
+
+    /**
+     * Removes the destinations idle for longer than idleNanos, then the least recently used idle ones above maxDestinations,
+     * and unregisters their MBeans. Destinations with exchanges in flight are kept.
+     */
+    static void evict( final long idleNanos, final int maxDestinations )
+    {
+        final long now = System.nanoTime();
+        final List<Destination> idle = new ArrayList<>();
+        for ( Destination destination : DESTINATIONS.values() )
+        {
+            if ( destination.getInFlight() == 0 )
+            {
+                idle.add( destination );
+            }
+        }
+        idle.sort( Comparator.comparingLong( destination -> destination.lastUsed - now ) );
+
+        int excess = DESTINATIONS.size() - maxDestinations;
+        for ( Destination destination : idle )
+        {
+            if ( excess <= 0 && now - destination.lastUsed <= idleNanos )
+            {
+                continue;
+            }
+            if ( DESTINATIONS.remove( destination.key, destination ) )
+            {
+                MBeans.unregister( destination.objectName() );
+                excess--;
+            }
+        }
+    }
+
+    private static Destination register( final String key )
+    {
+        final Destination destination = new Destination( key );
+        MBeans.register( destination, destination.objectName() );
+        return destination;
+    }
+
+    static boolean isTimeout( final Throwable error )
+    {
+        for ( Throwable e = error; e != null; e = e.getCause() )
+        {
+            if ( e instanceof HttpTimeoutException )
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static final class Destination
+        implements DestinationMetricsMXBean
+    {
+        private final String key;
+
+        private final LongAdder requests = new LongAdder();
+
+        private final LongAdder inFlight = new LongAdder();
+
+        private final LongAdder[] statusClasses = new LongAdder[5];
+
+        private final LongAdder errors = new LongAdder();
+
+        private final LongAdder timeouts = new LongAdder();
+
+        private final LongAdder spills = new LongAdder();
+
+        private final LongAdder spilledBytes = new LongAdder();
+
+        private final LongAdder bytesIn = new LongAdder();
+
+        private final LongAdder bytesOut = new LongAdder();
+
+        /**
+         * Latency until the response is available, usually when its headers are received, in microseconds.
+         */
+        private final Recorder latency = new Recorder( 3 );
+
+        private final Histogram totalLatency = new Histogram( 3 );
+
+        private final Histogram windowLatency = new Histogram( 3 );
+
+        private Histogram intervalLatency;
+
+        private final long windowNanos;
+
+        private volatile long nextWindowAt;
+
+        private volatile long rollingP99;
+
+        private volatile long lastUsed = System.nanoTime();
+
+        Destination( final String key )
+        {
+            this( key, WINDOW_NANOS );
+        }
+
+        Destination( final String key, final long windowNanos )
+        {
+            this.key = key;
+            this.windowNanos = windowNanos;
+            this.nextWindowAt = System.nanoTime() + windowNanos;
+            for ( int i = 0; i < statusClasses.length; i++ )
+            {
+                statusClasses[i] = new LongAdder();
+            }
+        }
+
+        String objectName()
+        {
+            return MBeans.name( "Destination", key );
+        }
+
+        void started()
+        {
+            lastUsed = System.nanoTime();
+            requests.increment();
+            inFlight.increment();
+        }
+
+        /**
+         * The exchange got its response, or failed before.
+         */
+        void completed()
+        {
+            inFlight.decrement();
+        }
+
+        void exchanged( final int status, final long nanos )
+        {
+            final int statusClass = status / 100 - 1;
+            if ( statusClass >= 0 && statusClass < statusClasses.length )
+            {
+                statusClasses[statusClass].increment();
+            }
+            latency.recordValue( Math.max( 0, TimeUnit.NANOSECONDS.toMicros( nanos ) ) );
+        }
+
+        void failed( final Throwable error )
+        {
+            ( isTimeout( error ) ? timeouts : errors ).increment();
+        }
+
+        void spilled()
+        {
+            spills.increment();
+        }
+
+        void spilledBytes( final long bytes )
+        {
+            spilledBytes.add( bytes );
+        }
+
+        /**
+         * Counts the response body bytes as received, before content decoding.
+         */
+        <T> HttpResponse.BodyHandler<T> countIn( final HttpResponse.BodyHandler<T> handler )
+        {
+            return responseInfo -> new CountingSubscriber<>( handler.apply( responseInfo ), bytesIn );
+        }
+
+        /**
+         * Counts the request body bytes as sent. The publisher is wrapped, its content length is kept, and so is the media type
+         * of a multipart body, Methanol sets the Content-Type with the boundary from it.
+         */
+        HttpRequest countOut( final HttpRequest request )
+        {
+            return request.bodyPublisher()
+                .filter( publisher -> publisher.contentLength() != 0 )
+                .map( publisher -> HttpRequest.newBuilder( request, ( name, value ) -> true )
+                    .method( request.method(), countingPublisher( publisher ) )
+                    .build() )
+                .orElse( request );
+        }
+
+        private HttpRequest.BodyPublisher countingPublisher( final HttpRequest.BodyPublisher publisher )
+        {
+            final HttpRequest.BodyPublisher counting = new CountingPublisher( publisher, bytesOut );
+            if ( publisher instanceof MimeBodyPublisher )
+            {
+                return MoreBodyPublishers.ofMediaType( counting, ( (MimeBodyPublisher) publisher ).mediaType() );
+            }
+            return counting;
+        }
+
+        /**
+         * @return copy of the cumulative latency histogram, in microseconds
+         */
+        synchronized Histogram latencySnapshot()
+        {
+            drainLatency();
+            return totalLatency.copy();
+        }
+
+        /**
+         * p99 latency of the last complete window with enough exchanges, 0 if there was none yet.
+         * Cheap unless a window has just ended, then the recorded latencies are drained once.
+         */
+        double rollingP99Millis()
+        {
+            if ( System.nanoTime() - nextWindowAt >= 0 )
+            {
+                rollWindow();
+            }
+            return rollingP99 / 1000.0;
+        }
+
+        private synchronized void rollWindow()
+        {
+            final long now = System.nanoTime();
+            if ( now - nextWindowAt < 0 )
+            {
+                return;
+            }
+            drainLatency();
+            if ( windowLatency.getTotalCount() >= MIN_WINDOW_COUNT )
+            {
+                rollingP99 = windowLatency.getValueAtPercentile( 99 );
+            }
+            windowLatency.reset();
+            nextWindowAt = now + windowNanos;
+        }
+
+        private void drainLatency()
+        {
+            intervalLatency = latency.getIntervalHistogram( intervalLatency );
+            totalLatency.add( intervalLatency );
+            windowLatency.add( intervalLatency );
+        }
+
+        @Override
+        public String getDestination()
+        {
+            return key;
+        }
+
+        @Override
+        public long getRequests()
+        {
+            return requests.sum();
+        }
+
+        @Override
+        public long getInFlight()
+        {
+            return inFlight.sum();
+        }
+
+        @Override
+        public long getResponses1xx()
+        {
+            return statusClasses[0].sum();
+        }
+
+        @Override
+        public long getResponses2xx()
+        {
+            return statusClasses[1].sum();
+        }
+
+        @Override
+        public long getResponses3xx()
+        {
+            return statusClasses[2].sum();
+        }
+
+        @Override
+        public long getResponses4xx()
+        {
+            return statusClasses[3].sum();
+        }
+
+        @Override
+        public long getResponses5xx()
+        {
+            return statusClasses[4].sum();
+        }
+
+        @Override
+        public long getErrors()
+        {
+            return errors.sum();
+        }
+
+        @Override
+        public long getTimeouts()
+        {
+            return timeouts.sum();
+        }
+
+        @Override
+        public long getSpills()
+        {
+            return spills.sum();
+        }
+
+        @Override
+        public long getSpilledBytes()
+        {
+            return spilledBytes.sum();
+        }
+
+        @Override
+        public long getBytesIn()
+        {
+            return bytesIn.sum();
+        }
+
+        @Override
+        public long getBytesOut()
+        {
+            return bytesOut.sum();
+        }
+
+        @Override
+        public double getLatencyMeanMillis()
+        {
+            return latencySnapshot().getMean() / 1000;
+        }
+
+        @Override
+        public double getLatencyP50Millis()
+        {
+            return latencySnapshot().getValueAtPercentile( 50 ) / 1000.0;
+        }
+
+        @Override
+        public double getLatencyP90Millis()
+        {
+            return latencySnapshot().getValueAtPercentile( 90 ) / 1000.0;
+        }
+
+        @Override
+        public double getLatencyP99Millis()
+        {
+            return latencySnapshot().getValueAtPercentile( 99 ) / 1000.0;
+        }
+
+        @Override
+        public double getLatencyP999Millis()
+        {
+            return latencySnapshot().getValueAtPercentile( 99.9 ) / 1000.0;
+        }
+
+        @Override
+        public double getLatencyMaxMillis()
+        {
+            return latencySnapshot().getMaxValue() / 1000.0;
+        }
+    }
+
+    private static final class CountingSubscriber<T>
+        implements HttpResponse.BodySubscriber<T>
+    {
+        private final HttpResponse.BodySubscriber<T> downstream;
+
+        private final LongAdder counter;
+
+        CountingSubscriber( final HttpResponse.BodySubscriber<T> downstream, final LongAdder counter )
+        {
+            this.downstream = downstream;
+            this.counter = counter;
+        }
+
+        @Override
+        public CompletionStage<T> getBody()
+        {
+            return downstream.getBody();
+        }
+
+        @Override
+        public void onSubscribe( final Flow.Subscription subscription )
+        {
+            downstream.onSubscribe( subscription );
+        }
+
+        @Override
+        public void onNext( final List<ByteBuffer> item )
+        {
+            long size = 0;
+            for ( ByteBuffer buffer : item )
+            {
+                size += buffer.remaining();
+            }
+            counter.add( size );
+            downstream.onNext( item );
+        }
+
+        @Override
+        public void onError( final Throwable throwable )
+        {
+            downstream.onError( throwable );
+        }
+
+        @Override
+        public void onComplete()
+        {
+            downstream.onComplete();
+        }
+    }
+
+    private static final class CountingPublisher
+        implements HttpRequest.BodyPublisher
+    {
+        private final HttpRequest.BodyPublisher delegate;
+
+        private final LongAdder counter;
+
+        CountingPublisher( final HttpRequest.BodyPublisher delegate, final LongAdder counter )
+        {
+            this.delegate = delegate;
+            this.counter = counter;
+        }
+
+        @Override
+        public long contentLength()
+        {
+            return delegate.contentLength();
+        }
+
+        @Override
+        public void subscribe( final Flow.Subscriber<? super ByteBuffer> subscriber )
+        {
+            delegate.subscribe( new Flow.Subscriber<ByteBuffer>()
+            {
+                @Override
+                public void onSubscribe( final Flow.Subscription subscription )
+                {
+                    subscriber.onSubscribe( subscription );
+                }
+
+                @Override
+                public void onNext( final ByteBuffer item )
+                {
+                    counter.add( item.remaining() );
+                    subscriber.onNext( item );
+                }
+
+                @Override
+                public void onError( final Throwable throwable )
+                {
+                    subscriber.onError( throwable );
+                }
+
+                @Override
+                public void onComplete()
+                {
+                    subscriber.onComplete();
+                }
+            } );
+        }
+    }
+}
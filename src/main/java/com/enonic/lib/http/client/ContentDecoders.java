@@ -0,0 +1,305 @@
+package com.enonic.lib.http.client;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.net.http.HttpHeaders;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import org.brotli.dec.BrotliInputStream;
+
+import com.google.common.io.CountingInputStream;
+
+import io.airlift.compress.zstd.ZstdInputStream;
+
+/**
+ * Decoders for response content codings. The HTTP clients don't decode responses themselves, bodies are decoded here as they are read.
+ * gzip and deflate are always available, br and zstd when their decoder libraries are on the classpath.
+ * Accept-Encoding is negotiated from the available decoders.
+ */
+final class ContentDecoders
+{
+    interface Decoder
+    {
+        InputStream decode( InputStream source )
+            throws IOException;
+    }
+
+    private static final Map<String, Decoder> DECODERS = createDecoders();
+
+    private static final Map<String, Stats> STATS = createStats();
+
+    private static final String ACCEPT_ENCODING = String.join( ", ", DECODERS.keySet() );
+
+    private ContentDecoders()
+    {
+    }
+
+    private static Map<String, Decoder> createDecoders()
+    {
+        final Map<String, Decoder> decoders = new LinkedHashMap<>();
+        if ( isPresent( "io.airlift.compress.zstd.ZstdInputStream" ) )
+        {
+            decoders.put( "zstd", ZstdInputStream::new );
+        }
+        if ( isPresent( "org.brotli.dec.BrotliInputStream" ) )
+        {
+            decoders.put( "br", BrotliInputStream::new );
+        }
+        decoders.put( "gzip", GZIPInputStream::new );
+        decoders.put( "deflate", ContentDecoders::inflate );
+        return Collections.unmodifiableMap( decoders );
+    }
+
+    private static Map<String, Stats> createStats()
+    {
+        final Map<String, Stats> stats = new LinkedHashMap<>();
+        DECODERS.keySet().forEach( encoding -> stats.put( encoding, new Stats() ) );
+        return Collections.unmodifiableMap( stats );
+    }
+
+    private static boolean isPresent( final String className )
+    {
+        try
+        {
+            Class.forName( className, false, ContentDecoders.class.getClassLoader() );
+            return true;
+        }
+        catch ( ClassNotFoundException | LinkageError e )
+        {
+            return false;
+        }
+    }
+
+    /**
+     * HTTP deflate is meant to be zlib wrapped, but some servers send raw deflate data. The zlib header is checked to tell them apart.
+     */
+    private static InputStream inflate( final InputStream source )
+        throws IOException
+    {
+        final PushbackInputStream in = new PushbackInputStream( source, 2 );
+        final byte[] header = in.readNBytes( 2 );
+        in.unread( header );
+        final boolean zlib =
+            header.length == 2 && ( header[0] & 0x0f ) == 8 && ( ( ( header[0] & 0xff ) << 8 ) | ( header[1] & 0xff ) ) % 31 == 0;
+        if ( zlib )
+        {
+            return new InflaterInputStream( in );
+        }
+        final Inflater inflater = new Inflater( true );
+        return new InflaterInputStream( in, inflater )
+        {
+            @Override
+            public void close()
+                throws IOException
+            {
+                try
+                {
+                    super.close();
+                }
+                finally
+                {
+                    inflater.end();
+                }
+            }
+        };
+    }
+
+    static String acceptEncoding()
+    {
+        return ACCEPT_ENCODING;
+    }
+
+    static Map<String, Stats> stats()
+    {
+        return STATS;
+    }
+
+    /**
+     * @return the content coding of the response if it can be decoded, otherwise null
+     */
+    static String decodableEncoding( final HttpHeaders headers )
+    {
+        final String encoding = headers.firstValue( "content-encoding" ).map( e -> e.trim().toLowerCase( Locale.ROOT ) ).orElse( null );
+        return encoding != null && DECODERS.containsKey( encoding ) ? encoding : null;
+    }
+
+    /**
+     * Returns a stream of the decoded body. The decoder is created on first read, so this never blocks waiting for the body.
+     */
+    static InputStream decode( final InputStream body, final HttpHeaders headers )
+    {
+        final String encoding = decodableEncoding( headers );
+        return encoding == null ? body : new DecodingInputStream( body, DECODERS.get( encoding ), STATS.get( encoding ) );
+    }
+
+    /**
+     * Headers as they apply to the decoded body: Content-Encoding and Content-Length are removed if the body is decoded.
+     */
+    static HttpHeaders decodedHeaders( final HttpHeaders headers )
+    {
+        if ( decodableEncoding( headers ) == null )
+        {
+            return headers;
+        }
+        return HttpHeaders.of( headers.map(),
+                               ( name, value ) -> !"content-encoding".equalsIgnoreCase( name ) && !"content-length".equalsIgnoreCase( name ) );
+    }
+
+    static final class Stats
+    {
+        private final LongAdder responses = new LongAdder();
+
+        private final LongAdder encodedBytes = new LongAdder();
+
+        private final LongAdder decodedBytes = new LongAdder();
+
+        void record( final long encoded, final long decoded )
+        {
+            responses.increment();
+            encodedBytes.add( encoded );
+            decodedBytes.add( decoded );
+        }
+
+        long getResponses()
+        {
+            return responses.sum();
+        }
+
+        long getEncodedBytes()
+        {
+            return encodedBytes.sum();
+        }
+
+        long getDecodedBytes()
+        {
+            return decodedBytes.sum();
+        }
+
+        /**
+         * @return decoded bytes per encoded byte, 0 if nothing was decoded yet
+         */
+        double getRatio()
+        {
+            final long encoded = getEncodedBytes();
+            return encoded == 0 ? 0 : (double) getDecodedBytes() / encoded;
+        }
+    }
+
+    private static final class DecodingInputStream
+        extends InputStream
+    {
+        private final CountingInputStream encoded;
+
+        private final Decoder decoder;
+
+        private final Stats stats;
+
+        private InputStream decoded;
+
+        private long decodedBytes;
+
+        private boolean recorded;
+
+        DecodingInputStream( final InputStream body, final Decoder decoder, final Stats stats )
+        {
+            this.encoded = new CountingInputStream( body );
+            this.decoder = decoder;
+            this.stats = stats;
+        }
+
+        private InputStream decoded()
+            throws IOException
+        {
+            if ( decoded == null )
+            {
+                // an empty body, e.g. of a HEAD request, has no header for the decoder to read
+                final PushbackInputStream in = new PushbackInputStream( encoded, 1 );
+                final int first = in.read();
+                if ( first == -1 )
+                {
+                    decoded = InputStream.nullInputStream();
+                }
+                else
+                {
+                    in.unread( first );
+                    decoded = decoder.decode( in );
+                }
+            }
+            return decoded;
+        }
+
+        @Override
+        public int read()
+            throws IOException
+        {
+            final int b = decoded().read();
+            if ( b == -1 )
+            {
+                record();
+            }
+            else
+            {
+                decodedBytes++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read( final byte[] b, final int off, final int len )
+            throws IOException
+        {
+            final int n = decoded().read( b, off, len );
+            if ( n == -1 )
+            {
+                record();
+            }
+            else
+            {
+                decodedBytes += n;
+            }
+            return n;
+        }
+
+        @Override
+        public int available()
+            throws IOException
+        {
+            return decoded == null ? 0 : decoded.available();
+        }
+
+        @Override
+        public void close()
+            throws IOException
+        {
+            try
+            {
+                if ( decoded != null )
+                {
+                    decoded.close();
+                }
+                encoded.close();
+            }
+            finally
+            {
+                record();
+            }
+        }
+
+        private void record()
+        {
+            if ( !recorded )
+            {
+                recorded = true;
+                stats.record( encoded.getCount(), decodedBytes );
+            }
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package com.enonic.lib.http.client;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end time budget of a call: connect, headers, body and resumed ranges. The deadline of the call in progress on a thread is
+ * inherited by calls made from its callbacks, so nested calls never outlive the outer one.
+ */
+final class Deadline
+{
+    static final Deadline NONE = new Deadline( Long.MAX_VALUE );
+
+    private static final ThreadLocal<Deadline> CURRENT = new ThreadLocal<>();
+
+    private final long expiresAt;
+
+    private Deadline( final long expiresAt )
+    {
+        this.expiresAt = expiresAt;
+    }
+
+    /**
+     * @param totalTimeout milliseconds, or null for no timeout of its own
+     * @return the earlier of the timeout from now and the deadline inherited from the enclosing call, NONE if there is neither
+     */
+    static Deadline after( final Long totalTimeout )
+    {
+        final Deadline current = CURRENT.get();
+        final Deadline inherited = current != null ? current : NONE;
+        if ( totalTimeout == null )
+        {
+            return inherited;
+        }
+        final Deadline own = new Deadline( System.nanoTime() + TimeUnit.MILLISECONDS.toNanos( Math.max( 0, totalTimeout ) ) );
+        return inherited != NONE && inherited.expiresAt - own.expiresAt < 0 ? inherited : own;
+    }
+
+    /**
+     * Runs the call with this deadline inherited by calls made on the same thread.
+     */
+    <T> T scope( final Callable<T> call )
+        throws Exception
+    {
+        final Deadline previous = CURRENT.get();
+        CURRENT.set( this );
+        try
+        {
+            return call.call();
+        }
+        finally
+        {
+            if ( previous != null )
+            {
+                CURRENT.set( previous );
+            }
+            else
+            {
+                CURRENT.remove();
+            }
+        }
+    }
+
+    boolean isSet()
+    {
+        return this != NONE;
+    }
+
+    long remainingNanos()
+    {
+        return this == NONE ? Long.MAX_VALUE : expiresAt - System.nanoTime();
+    }
+
+    /**
+     * @throws HttpTimeoutException if the deadline has passed
+     */
+    void check()
+        throws HttpTimeoutException
+    {
+        if ( remainingNanos() <= 0 )
+        {
+            throw expired();
+        }
+    }
+
+    /**
+     * @return the phase timeout, shortened to the remaining time if that is less
+     */
+    Duration cap( final Duration timeout )
+    {
+        if ( this == NONE )
+        {
+            return timeout;
+        }
+        final Duration remaining = Duration.ofNanos( Math.max( TimeUnit.MILLISECONDS.toNanos( 1 ), remainingNanos() ) );
+        return remaining.compareTo( timeout ) < 0 ? remaining : timeout;
+    }
+
+    HttpTimeoutException expired()
+    {
+        return new HttpTimeoutException( "Request deadline exceeded" );
+    }
+
+    /**
+     * Fails reads from the body once the deadline has passed, also when the upstream keeps sending data slowly.
+     * Closing the stream cancels the exchange and releases the connection.
+     */
+    InputStream guard( final InputStream body )
+    {
+        return this == NONE ? body : new DeadlineInputStream( body );
+    }
+
+    private final class DeadlineInputStream
+        extends FilterInputStream
+    {
+        DeadlineInputStream( final InputStream in )
+        {
+            super( in );
+        }
+
+        @Override
+        public int read()
+            throws IOException
+        {
+            checkOpen();
+            try
+            {
+                return super.read();
+            }
+            catch ( IOException e )
+            {
+                throw translate( e );
+            }
+        }
+
+        @Override
+        public int read( final byte[] b, final int off, final int len )
+            throws IOException
+        {
+            checkOpen();
+            try
+            {
+                return super.read( b, off, len );
+            }
+            catch ( IOException e )
+            {
+                throw translate( e );
+            }
+        }
+
+        @Override
+        public long skip( final long n )
+            throws IOException
+        {
+            checkOpen();
+            return super.skip( n );
+        }
+
+        private void checkOpen()
+            throws IOException
+        {
+            if ( remainingNanos() <= 0 )
+            {
+                close();
+                throw expired();
+            }
+        }
+
+        /**
+         * The read timeout is capped to the deadline, a read timing out at the deadline is reported as the deadline.
+         */
+        private IOException translate( final IOException e )
+        {
+            if ( remainingNanos() > 0 )
+            {
+                return e;
+            }
+            final HttpTimeoutException expired = expired();
+            expired.initCause( e );
+            return expired;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.enonic.lib.http.client;
+
+/**
+ * JMX view of the metrics of one destination. Latencies are measured until the response headers are received.
+ */
+public interface DestinationMetricsMXBean
+{
+    String getDestination();
+
+    long getRequests();
+
+    long getInFlight();
+
+    long getResponses1xx();
+
+    long getResponses2xx();
+
+    long getResponses3xx();
+
+    long getResponses4xx();
+
+    long getResponses5xx();
+
+    long getErrors();
+
+    long getTimeouts();
+
+    long getSpills();
+
+    long getSpilledBytes();
+
+    long getBytesIn();
+
+    long getBytesOut();
+
+    double getLatencyMeanMillis();
+
+    double getLatencyP50Millis();
+
+    double getLatencyP90Millis();
+
+    double getLatencyP99Millis();
+
+    double getLatencyP999Millis();
+
+    double getLatencyMaxMillis();
+}
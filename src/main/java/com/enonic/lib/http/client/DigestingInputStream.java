@@ -0,0 +1,141 @@
+package com.enonic.lib.http.client;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Locale;
+
+import com.google.common.io.BaseEncoding;
+
+/**
+ * Computes the digest and size of the bytes as they are read through, so the content doesn't have to be read twice.
+ */
+final class DigestingInputStream
+    extends FilterInputStream
+{
+    private final MessageDigest digest;
+
+    private long count;
+
+    private boolean eof;
+
+    DigestingInputStream( final InputStream in, final MessageDigest digest )
+    {
+        super( in );
+        this.digest = digest;
+    }
+
+    /**
+     * @param algorithm 'sha256' or 'md5', case-insensitive
+     * @return the documented name of the algorithm, which is also the key of the checksum in the result
+     */
+    static String checksumName( final String algorithm )
+    {
+        final String name = algorithm.toLowerCase( Locale.ROOT );
+        if ( !"sha256".equals( name ) && !"md5".equals( name ) )
+        {
+            throw new IllegalArgumentException( "Invalid checksum: " + algorithm );
+        }
+        return name;
+    }
+
+    /**
+     * @param algorithm 'sha256' or 'md5', case-insensitive
+     */
+    static MessageDigest newDigest( final String algorithm )
+    {
+        final String name;
+        switch ( checksumName( algorithm ) )
+        {
+            case "sha256":
+                name = "SHA-256";
+                break;
+            case "md5":
+                name = "MD5";
+                break;
+            default:
+                throw new IllegalArgumentException( "Invalid checksum: " + algorithm );
+        }
+        try
+        {
+            return MessageDigest.getInstance( name );
+        }
+        catch ( NoSuchAlgorithmException e )
+        {
+            throw new IllegalStateException( e );
+        }
+    }
+
+    @Override
+    public int read()
+        throws IOException
+    {
+        final int b = in.read();
+        if ( b == -1 )
+        {
+            eof = true;
+        }
+        else
+        {
+            digest.update( (byte) b );
+            count++;
+        }
+        return b;
+    }
+
+    @Override
+    public int read( final byte[] b, final int off, final int len )
+        throws IOException
+    {
+        final int n = in.read( b, off, len );
+        if ( n == -1 )
+        {
+            eof = true;
+        }
+        else
+        {
+            digest.update( b, off, n );
+            count += n;
+        }
+        return n;
+    }
+
+    @Override
+    public long skip( final long n )
+        throws IOException
+    {
+        // skipped bytes must be digested too
+        final byte[] buf = new byte[(int) Math.min( n, 8192 )];
+        final int read = read( buf, 0, buf.length );
+        return Math.max( read, 0 );
+    }
+
+    @Override
+    public boolean markSupported()
+    {
+        return false;
+    }
+
+    /**
+     * @return true if the stream was read to the end
+     */
+    boolean isComplete()
+    {
+        return eof;
+    }
+
+    long getCount()
+    {
+        return count;
+    }
+
+    /**
+     * @return lowercase hex digest of the bytes read
+     */
+    String hexDigest()
+    {
+        return BaseEncoding.base16().lowerCase().encode( digest.digest() );
+    }
+}
@@ -0,0 +1,38 @@
+package com.enonic.lib.http.client;
+
+import com.enonic.xp.script.serializer.MapGenerator;
+import com.enonic.xp.script.serializer.MapSerializable;
+
+/**
+ * Response of a download: the response without body, plus size and checksum of the body written to the sink.
+ */
+public final class DownloadResponseMapper
+    implements MapSerializable
+{
+    private final ResponseMapper response;
+
+    private final String checksumName;
+
+    private final String checksum;
+
+    private final long size;
+
+    DownloadResponseMapper( final ResponseMapper response, final String checksumName, final String checksum, final long size )
+    {
+        this.response = response;
+        this.checksumName = checksumName;
+        this.checksum = checksum;
+        this.size = size;
+    }
+
+    @Override
+    public void serialize( final MapGenerator gen )
+    {
+        response.serialize( gen );
+        if ( checksum != null )
+        {
+            gen.value( "size", size );
+            gen.value( checksumName, checksum );
+        }
+    }
+}
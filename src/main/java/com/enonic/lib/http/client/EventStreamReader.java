@@ -0,0 +1,328 @@
+package com.enonic.lib.http.client;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.net.http.HttpHeaders;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import com.github.mizosoft.methanol.MediaType;
+
+import com.enonic.xp.script.serializer.MapGenerator;
+import com.enonic.xp.script.serializer.MapSerializable;
+
+/**
+ * Reads a response body incrementally and reports raw chunks, lines and parsed events as the bytes arrive.
+ * Server-Sent Events (text/event-stream) and newline-delimited JSON are parsed to events, any other content is reported as lines only.
+ * Lines are bounded to {@link #MAX_LINE_BYTES} and the data of a Server-Sent Event to {@link #MAX_EVENT_CHARS}, so a misbehaving
+ * upstream can't make the reader buffer an unbounded amount of data.
+ */
+final class EventStreamReader
+{
+    static final int MAX_LINE_BYTES = 1024 * 1024;
+
+    static final int MAX_EVENT_CHARS = 4 * 1024 * 1024;
+
+    private static final int BUFFER_SIZE = 8192;
+
+    enum Format
+    {
+        SSE, NDJSON, LINES
+    }
+
+    interface Listener
+    {
+        /**
+         * @return false to stop reading
+         */
+        boolean onChunk( byte[] bytes );
+
+        /**
+         * @return false to stop reading
+         */
+        boolean onLine( String line );
+
+        /**
+         * @return false to stop reading
+         */
+        boolean onEvent( MapSerializable event );
+    }
+
+    private final Format format;
+
+    private final Listener listener;
+
+    private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+
+    private boolean lastWasCr;
+
+    // Server-Sent Events state
+
+    private final StringBuilder data = new StringBuilder();
+
+    private boolean hasData;
+
+    private String eventType;
+
+    private String lastEventId;
+
+    private Long retry;
+
+    EventStreamReader( final Format format, final Listener listener )
+    {
+        this.format = format;
+        this.listener = listener;
+    }
+
+    static Format formatOf( final HttpHeaders headers )
+    {
+        final String contentType = Utils.getContentType( headers );
+        if ( contentType == null )
+        {
+            return Format.LINES;
+        }
+        try
+        {
+            final MediaType mediaType = MediaType.parse( contentType );
+            final String subtype = mediaType.subtype();
+            if ( "event-stream".equals( subtype ) )
+            {
+                return Format.SSE;
+            }
+            if ( subtype.endsWith( "ndjson" ) || subtype.endsWith( "jsonl" ) || "stream+json".equals( subtype ) )
+            {
+                return Format.NDJSON;
+            }
+            return Format.LINES;
+        }
+        catch ( IllegalArgumentException e )
+        {
+            return Format.LINES;
+        }
+    }
+
+    /**
+     * Reads the stream until it ends or a listener asks to stop. The stream is not closed.
+     *
+     * @return true if the stream was read to the end, false if a listener stopped reading
+     */
+    boolean read( final InputStream input )
+        throws IOException
+    {
+        final byte[] buf = new byte[BUFFER_SIZE];
+        int read;
+        while ( ( read = input.read( buf ) ) != -1 )
+        {
+            if ( read == 0 )
+            {
+                continue;
+            }
+            if ( !listener.onChunk( Arrays.copyOf( buf, read ) ) || !processBytes( buf, read ) )
+            {
+                return false;
+            }
+        }
+
+        // last line without a line terminator
+        if ( line.size() > 0 && !processLine() )
+        {
+            return false;
+        }
+        // Per the Server-Sent Events specification an event not terminated by a blank line is discarded
+        return true;
+    }
+
+    private boolean processBytes( final byte[] buf, final int len )
+        throws IOException
+    {
+        int start = 0;
+        for ( int i = 0; i < len; i++ )
+        {
+            final byte b = buf[i];
+            if ( b == '\n' && lastWasCr )
+            {
+                // second half of CRLF
+                lastWasCr = false;
+                start = i + 1;
+                continue;
+            }
+            lastWasCr = b == '\r';
+            if ( b == '\n' || b == '\r' )
+            {
+                append( buf, start, i - start );
+                start = i + 1;
+                if ( !processLine() )
+                {
+                    return false;
+                }
+            }
+        }
+        append( buf, start, len - start );
+        return true;
+    }
+
+    private void append( final byte[] buf, final int off, final int len )
+        throws IOException
+    {
+        if ( line.size() + len > MAX_LINE_BYTES )
+        {
+            throw new IOException( "Stream line exceeds " + MAX_LINE_BYTES + " bytes" );
+        }
+        line.write( buf, off, len );
+    }
+
+    private boolean processLine()
+        throws IOException
+    {
+        final String text = line.toString( StandardCharsets.UTF_8 );
+        line.reset();
+
+        if ( !listener.onLine( text ) )
+        {
+            return false;
+        }
+
+        switch ( format )
+        {
+            case SSE:
+                return processEventLine( text );
+            case NDJSON:
+                return text.isBlank() || listener.onEvent( new JsonEvent( text ) );
+            default:
+                return true;
+        }
+    }
+
+    private boolean processEventLine( final String text )
+        throws IOException
+    {
+        if ( text.isEmpty() )
+        {
+            return dispatchEvent();
+        }
+        if ( text.charAt( 0 ) == ':' )
+        {
+            return true;
+        }
+
+        final int colon = text.indexOf( ':' );
+        final String field = colon == -1 ? text : text.substring( 0, colon );
+        String value = colon == -1 ? "" : text.substring( colon + 1 );
+        if ( value.startsWith( " " ) )
+        {
+            value = value.substring( 1 );
+        }
+
+        switch ( field )
+        {
+            case "event":
+                eventType = value;
+                break;
+            case "data":
+                // an upstream that never ends the event would otherwise collect its data lines forever
+                if ( data.length() + 1 + value.length() > MAX_EVENT_CHARS )
+                {
+                    throw new IOException( "Stream event exceeds " + MAX_EVENT_CHARS + " characters" );
+                }
+                if ( hasData )
+                {
+                    data.append( '\n' );
+                }
+                data.append( value );
+                hasData = true;
+                break;
+            case "id":
+                if ( value.indexOf( '\0' ) == -1 )
+                {
+                    lastEventId = value;
+                }
+                break;
+            case "retry":
+                if ( !value.isEmpty() && value.chars().allMatch( c -> c >= '0' && c <= '9' ) )
+                {
+                    try
+                    {
+                        retry = Long.parseLong( value );
+                    }
+                    catch ( NumberFormatException ignore )
+                    {
+                    }
+                }
+                break;
+            default:
+                break;
+        }
+        return true;
+    }
+
+    private boolean dispatchEvent()
+    {
+        if ( !hasData )
+        {
+            eventType = null;
+            return true;
+        }
+        final ServerSentEvent event =
+            new ServerSentEvent( lastEventId, eventType == null || eventType.isEmpty() ? "message" : eventType, data.toString(), retry );
+        data.setLength( 0 );
+        hasData = false;
+        eventType = null;
+        return listener.onEvent( event );
+    }
+
+    static final class ServerSentEvent
+        implements MapSerializable
+    {
+        final String id;
+
+        final String event;
+
+        final String data;
+
+        final Long retry;
+
+        ServerSentEvent( final String id, final String event, final String data, final Long retry )
+        {
+            this.id = id;
+            this.event = event;
+            this.data = data;
+            this.retry = retry;
+        }
+
+        @Override
+        public void serialize( final MapGenerator gen )
+        {
+            gen.value( "id", id );
+            gen.value( "event", event );
+            gen.value( "data", data );
+            gen.value( "retry", retry );
+        }
+    }
+
+    static final class JsonEvent
+        implements MapSerializable
+    {
+        final String line;
+
+        JsonEvent( final String line )
+        {
+            this.line = line;
+        }
+
+        @Override
+        public void serialize( final MapGenerator gen )
+        {
+            try
+            {
+                JsonBodyParser.parse( new StringReader( line ), gen, "data" );
+            }
+            catch ( IOException e )
+            {
+                throw new UncheckedIOException( e.getMessage(), e );
+            }
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.enonic.lib.http.client;
+
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.enonic.xp.script.serializer.MapGenerator;
+import com.enonic.xp.trace.Trace;
+
+/**
+ * Time of each phase of an exchange, relative to its start. Each phase is marked once, by whichever thread reaches it first,
+ * so a slow call can be attributed to client creation, waiting for the response or reading the body.
+ */
+final class ExchangeTimings
+{
+    enum Phase
+    {
+        REQUEST_BUILT( "requestBuilt" ),
+        CLIENT_READY( "clientReady" ),
+        SENT( "sent" ),
+        HEADERS( "headers" ),
+        FIRST_BYTE( "firstByte" ),
+        SPILL_STARTED( "spillStarted" ),
+        BODY_READ( "bodyRead" ),
+        MAPPED( "mapped" );
+
+        private final String key;
+
+        Phase( final String key )
+        {
+            this.key = key;
+        }
+
+        String key()
+        {
+            return key;
+        }
+    }
+
+    private static final Phase[] PHASES = Phase.values();
+
+    private final long start = System.nanoTime();
+
+    private final AtomicLongArray marks = new AtomicLongArray( PHASES.length );
+
+    void mark( final Phase phase )
+    {
+        // 0 means not reached, a phase reached in the same nanosecond as the start is recorded as 1
+        marks.compareAndSet( phase.ordinal(), 0, Math.max( 1, System.nanoTime() - start ) );
+    }
+
+    /**
+     * @return milliseconds from the start of the exchange to the phase, or -1 if the phase wasn't reached
+     */
+    double millis( final Phase phase )
+    {
+        final long nanos = marks.get( phase.ordinal() );
+        return nanos == 0 ? -1 : nanos / 1_000_000.0;
+    }
+
+    /**
+     * @return milliseconds from the start of the exchange to now
+     */
+    double elapsedMillis()
+    {
+        return ( System.nanoTime() - start ) / 1_000_000.0;
+    }
+
+    /**
+     * Marks the headers when the response arrives and the first byte when the first body data arrives.
+     */
+    <T> HttpResponse.BodyHandler<T> observe( final HttpResponse.BodyHandler<T> handler )
+    {
+        return responseInfo -> {
+            mark( Phase.HEADERS );
+            return new FirstByteSubscriber<>( handler.apply( responseInfo ) );
+        };
+    }
+
+    void serialize( final String name, final MapGenerator gen )
+    {
+        gen.map( name );
+        for ( Phase phase : PHASES )
+        {
+            final double millis = millis( phase );
+            if ( millis >= 0 )
+            {
+                gen.value( phase.key, millis );
+            }
+        }
+        gen.end();
+    }
+
+    void trace( final Trace trace )
+    {
+        if ( trace == null )
+        {
+            return;
+        }
+        for ( Phase phase : PHASES )
+        {
+            final double millis = millis( phase );
+            if ( millis >= 0 )
+            {
+                trace.put( phase.key, millis );
+            }
+        }
+    }
+
+    private final class FirstByteSubscriber<T>
+        implements HttpResponse.BodySubscriber<T>
+    {
+        private final HttpResponse.BodySubscriber<T> downstream;
+
+        private boolean received;
+
+        FirstByteSubscriber( final HttpResponse.BodySubscriber<T> downstream )
+        {
+            this.downstream = downstream;
+        }
+
+        @Override
+        public CompletionStage<T> getBody()
+        {
+            return downstream.getBody();
+        }
+
+        @Override
+        public void onSubscribe( final Flow.Subscription subscription )
+        {
+            downstream.onSubscribe( subscription );
+        }
+
+        @Override
+        public void onNext( final List<ByteBuffer> item )
+        {
+            if ( !received && item.stream().anyMatch( ByteBuffer::hasRemaining ) )
+            {
+                received = true;
+                mark( Phase.FIRST_BYTE );
+            }
+            downstream.onNext( item );
+        }
+
+        @Override
+        public void onError( final Throwable throwable )
+        {
+            downstream.onError( throwable );
+        }
+
+        @Override
+        public void onComplete()
+        {
+            downstream.onComplete();
+        }
+    }
+}
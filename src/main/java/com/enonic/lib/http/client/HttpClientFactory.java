@@ -9,12 +9,15 @@ import java.net.URI;
 import java.net.http.HttpClient;
 import java.nio.CharBuffer;
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
 
 import javax.net.ssl.SSLContext;
 
@@ -37,22 +40,57 @@ class HttpClientFactory
 
     private static final ConcurrentMap<String, HttpClientWrapper> CACHE = new ConcurrentHashMap<>();
 
+    /**
+     * Cached clients are identified by a prefix of the cache key, which is a hash and doesn't reveal credentials.
+     */
+    private static final int CLIENT_ID_LENGTH = 16;
+
+    private static final LongAdder CREATIONS = new LongAdder();
+
+    /**
+     * Clients replaced after being idle for a destination, evicted or flushed.
+     */
+    private static final LongAdder EVICTIONS = new LongAdder();
+
     private static final Executor SHARED_WORKERS_EXECUTOR = Executors.newCachedThreadPool( new SharedWorkerThreadFactory() );
 
     private HttpClientFactory()
     {
     }
 
+    static
+    {
+        MBeans.register( new ClientCache(), ClientCache.OBJECT_NAME );
+    }
+
     private static class HttpClientWrapper
     {
         final HttpClient client;
 
         final Map<String, Long> lastAccess;
 
-        public HttpClientWrapper( final HttpClient client, Map<String, Long> lastAccess )
+        final String identity;
+
+        final long createdAt = System.currentTimeMillis();
+
+        public HttpClientWrapper( final HttpClient client, Map<String, Long> lastAccess, final ClientParams params )
         {
             this.client = client;
             this.lastAccess = lastAccess;
+            this.identity = identity( params );
+        }
+
+        CachedClientInfo info( final String key )
+        {
+            final List<CachedClientInfo.Destination> destinations = new ArrayList<>();
+            if ( lastAccess != null )
+            {
+                lastAccess.forEach( ( destination, time ) -> {
+                    final ClientMetrics.Destination metrics = ClientMetrics.find( destination );
+                    destinations.add( new CachedClientInfo.Destination( destination, time, metrics != null ? metrics.getInFlight() : 0 ) );
+                } );
+            }
+            return new CachedClientInfo( clientId( key ), identity, createdAt, destinations );
         }
     }
 
@@ -60,6 +98,8 @@ class HttpClientFactory
     {
         final Duration connectTimeout;
 
+        final Duration headersTimeout;
+
         final PasswordAuthentication serverAuth;
 
         final PasswordAuthentication proxyAuth;
@@ -81,6 +121,9 @@ class HttpClientFactory
 
             this.connectTimeout = Duration.ofMillis( requireNonNullElse( builder.connectTimeout, DEFAULT_CONNECT_TIMEOUT_MS ) );
 
+            // without a timeout of its own, waiting for the headers is bounded by the connect timeout, counted from sending
+            this.headersTimeout = builder.headersTimeout != null ? Duration.ofMillis( builder.headersTimeout ) : this.connectTimeout;
+
             if ( !requireNonNullElse( builder.authUser, "" ).isEmpty() && builder.authPassword != null )
             {
                 this.serverAuth = new PasswordAuthentication( builder.authUser, builder.authPassword.toCharArray() );
@@ -127,6 +170,8 @@ class HttpClientFactory
 
             private Long connectTimeout;
 
+            private Long headersTimeout;
+
             private String authUser;
 
             private String authPassword;
@@ -157,6 +202,12 @@ class HttpClientFactory
                 return this;
             }
 
+            Builder headersTimeout( final Long headersTimeout )
+            {
+                this.headersTimeout = headersTimeout;
+                return this;
+            }
+
             Builder authUser( final String authUser )
 
             {
@@ -230,12 +281,111 @@ class HttpClientFactory
         CACHE.clear();
     }
 
+    static List<CachedClientInfo> cachedClients()
+    {
+        final List<CachedClientInfo> clients = new ArrayList<>();
+        for ( String key : CACHE.keySet() )
+        {
+            // the last access map is updated under the lock of the entry
+            CACHE.computeIfPresent( key, ( k, wrapper ) -> {
+                clients.add( wrapper.info( k ) );
+                return wrapper;
+            } );
+        }
+        return clients;
+    }
+
+    /**
+     * Removes the client from the cache. Exchanges in progress complete, the next request creates a new client.
+     *
+     * @return true if a client with the id was cached
+     */
+    static boolean evict( final String id )
+    {
+        final boolean removed = CACHE.keySet().removeIf( key -> clientId( key ).equals( id ) );
+        if ( removed )
+        {
+            EVICTIONS.increment();
+        }
+        return removed;
+    }
+
+    /**
+     * @return number of clients removed from the cache
+     */
+    static int flush()
+    {
+        int count = 0;
+        for ( String key : CACHE.keySet() )
+        {
+            if ( CACHE.remove( key ) != null )
+            {
+                count++;
+            }
+        }
+        EVICTIONS.add( count );
+        return count;
+    }
+
+    static int cacheSize()
+    {
+        return CACHE.size();
+    }
+
+    static long creations()
+    {
+        return CREATIONS.sum();
+    }
+
+    static long evictions()
+    {
+        return EVICTIONS.sum();
+    }
+
+    private static String clientId( final String key )
+    {
+        return key.substring( 0, Math.min( CLIENT_ID_LENGTH, key.length() ) );
+    }
+
+    /**
+     * Describes the client settings without credentials or certificate content.
+     */
+    private static String identity( final ClientParams params )
+    {
+        final StringBuilder identity = new StringBuilder();
+        identity.append( "connectTimeout=" ).append( params.connectTimeout.toMillis() ).append( "ms" );
+        identity.append( ", headersTimeout=" ).append( params.headersTimeout.toMillis() ).append( "ms" );
+        identity.append( ", http2=" ).append( !params.disableHttp2 );
+        identity.append( ", redirects=" ).append( params.followRedirects );
+        if ( params.proxy != null )
+        {
+            identity.append( ", proxy=" ).append( params.proxy.getHostString() ).append( ':' ).append( params.proxy.getPort() );
+        }
+        if ( params.serverAuth != null )
+        {
+            identity.append( ", auth=***" );
+        }
+        if ( params.proxyAuth != null )
+        {
+            identity.append( ", proxyAuth=***" );
+        }
+        if ( params.certificates != null )
+        {
+            identity.append( ", certificates=custom" );
+        }
+        if ( params.clientCertificate != null )
+        {
+            identity.append( ", clientCertificate=custom" );
+        }
+        return identity.toString();
+    }
+
     static HttpClient getHttpClient( final ClientParams params, final URI uri )
     {
         return CACHE.compute( cacheKey( params ), ( key, old ) -> {
             if ( IDLE_TIMEOUT_MS <= 0 )
             {
-                return old != null ? old : new HttpClientWrapper( createClient( params ), null );
+                return old != null ? old : newWrapper( params, null );
             }
             final String keyForRequest = keyForRequest( uri, params.proxy );
             final long currentTimeMillis = System.currentTimeMillis();
@@ -249,12 +399,23 @@ class HttpClientFactory
             }
             else
             {
-                return new HttpClientWrapper( createClient( params ), new HashMap<>( Map.of( keyForRequest, currentTimeMillis ) ) );
+                if ( old != null )
+                {
+                    EVICTIONS.increment();
+                }
+                return newWrapper( params, new HashMap<>( Map.of( keyForRequest, currentTimeMillis ) ) );
             }
         } ).client;
     }
 
-    private static String keyForRequest( final URI uri, final InetSocketAddress proxy )
+    private static HttpClientWrapper newWrapper( final ClientParams params, final Map<String, Long> lastAccess )
+    {
+        final HttpClientWrapper wrapper = new HttpClientWrapper( createClient( params ), lastAccess, params );
+        CREATIONS.increment();
+        return wrapper;
+    }
+
+    static String keyForRequest( final URI uri, final InetSocketAddress proxy )
     {
         final boolean isSecure = Utils.isSecure( uri );
         final String host = uri.getHost();
@@ -280,7 +441,7 @@ class HttpClientFactory
         return keyBuilder.toString();
     }
 
-    private static String cacheKey( final ClientParams params )
+    static String cacheKey( final ClientParams params )
     {
         final Hasher hasher = Hashing.sha512().newHasher();
 
@@ -288,6 +449,8 @@ class HttpClientFactory
 
         hasher.putLong( params.connectTimeout.toMillis() );
 
+        hasher.putLong( params.headersTimeout.toMillis() );
+
         if ( params.serverAuth != null )
         {
             hasher.putUnencodedChars( params.serverAuth.getUserName() )
@@ -333,7 +496,10 @@ class HttpClientFactory
     private static HttpClient createClient( final ClientParams params )
     {
         final var clientBuilder = Methanol.newBuilder();
-        clientBuilder.headersTimeout( params.connectTimeout );
+        clientBuilder.connectTimeout( params.connectTimeout );
+        clientBuilder.headersTimeout( params.headersTimeout );
+        // responses are decoded by ContentDecoders, which also covers br and zstd
+        clientBuilder.autoAcceptEncoding( false );
         if ( params.disableHttp2 )
         {
             clientBuilder.version( HttpClient.Version.HTTP_1_1 );
@@ -1,17 +1,23 @@
 package com.enonic.lib.http.client;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.UncheckedIOException;
 import java.math.BigInteger;
 import java.net.URI;
 import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.Flow;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.stream.Collectors;
 
 import com.github.mizosoft.methanol.MediaType;
+import com.github.mizosoft.methanol.MimeBodyPublisher;
 import com.github.mizosoft.methanol.MoreBodyPublishers;
 import com.github.mizosoft.methanol.MultipartBodyPublisher;
 import com.google.common.base.Optional;
@@ -22,6 +28,13 @@ import static java.util.Objects.requireNonNullElse;
 
 class HttpRequestFactory
 {
+    static final int MAX_IN_MEMORY_REQUEST_BODY_BYTES = 1024 * 1024;
+
+    /**
+     * Request bodies of known length below this size are sent uncompressed even if compressBody is set.
+     */
+    static final long COMPRESS_BODY_THRESHOLD = Long.getLong( "com.enonic.lib.http.client.compress.threshold", 1024 );
+
     private HttpRequestFactory()
     {
     }
@@ -46,6 +59,8 @@ class HttpRequestFactory
 
         private final boolean formIsQueryParams;
 
+        private final BodyCompression compressBody;
+
         RequestParams( final Builder builder )
         {
             this.method = requireNonNullElse( builder.method, "GET" ).trim().toUpperCase( Locale.ROOT );
@@ -58,6 +73,7 @@ class HttpRequestFactory
             this.contentType = builder.contentType;
             this.body = builder.body;
             this.multipart = builder.multipart;
+            this.compressBody = BodyCompression.from( builder.compressBody );
         }
 
         private static Map<String, String> toStringStringMap( final Map<String, Object> map )
@@ -90,6 +106,8 @@ class HttpRequestFactory
 
             private List<Map<String, Object>> multipart;
 
+            private String compressBody;
+
             Builder url( final String url )
             {
                 this.url = url;
@@ -138,6 +156,12 @@ class HttpRequestFactory
                 return this;
             }
 
+            Builder compressBody( final String compressBody )
+            {
+                this.compressBody = compressBody;
+                return this;
+            }
+
             RequestParams build()
             {
                 return new RequestParams( this );
@@ -168,6 +192,10 @@ class HttpRequestFactory
         final HttpRequest.Builder request = HttpRequest.newBuilder( uri );
 
         params.headers.forEach( request::header );
+        if ( params.headers.keySet().stream().noneMatch( "accept-encoding"::equalsIgnoreCase ) )
+        {
+            request.header( "accept-encoding", ContentDecoders.acceptEncoding() );
+        }
 
         setRequestBody( params, request );
 
@@ -205,7 +233,63 @@ class HttpRequestFactory
         {
             requestBody = HttpRequest.BodyPublishers.noBody();
         }
-        request.method( params.method, requestBody );
+        request.method( params.method, compressBody( params, requestBody, request ) );
+    }
+
+    private static HttpRequest.BodyPublisher compressBody( final RequestParams params, final HttpRequest.BodyPublisher requestBody,
+                                                           final HttpRequest.Builder request )
+    {
+        final long contentLength = requestBody.contentLength();
+        if ( params.compressBody == null || contentLength == 0 || contentLength > 0 && contentLength < COMPRESS_BODY_THRESHOLD ||
+            params.headers.keySet().stream().anyMatch( "content-encoding"::equalsIgnoreCase ) )
+        {
+            return requestBody;
+        }
+
+        request.setHeader( "content-encoding", params.compressBody.contentEncoding() );
+        final HttpRequest.BodyPublisher compressed =
+            HttpRequest.BodyPublishers.ofInputStream( () -> params.compressBody.compress( toInputStream( requestBody ) ) );
+        if ( requestBody instanceof MimeBodyPublisher )
+        {
+            // a multipart body carries its Content-Type, with the boundary, as the media type of the publisher
+            return MoreBodyPublishers.ofMediaType( compressed, ( (MimeBodyPublisher) requestBody ).mediaType() );
+        }
+        return compressed;
+    }
+
+    /**
+     * Subscribes to the publisher and returns its content as a stream. Buffers are requested one at a time as the stream is read.
+     */
+    private static InputStream toInputStream( final Flow.Publisher<ByteBuffer> publisher )
+    {
+        final HttpResponse.BodySubscriber<InputStream> subscriber = HttpResponse.BodySubscribers.ofInputStream();
+        publisher.subscribe( new Flow.Subscriber<>()
+        {
+            @Override
+            public void onSubscribe( final Flow.Subscription subscription )
+            {
+                subscriber.onSubscribe( subscription );
+            }
+
+            @Override
+            public void onNext( final ByteBuffer item )
+            {
+                subscriber.onNext( List.of( item ) );
+            }
+
+            @Override
+            public void onError( final Throwable throwable )
+            {
+                subscriber.onError( throwable );
+            }
+
+            @Override
+            public void onComplete()
+            {
+                subscriber.onComplete();
+            }
+        } );
+        return subscriber.getBody().toCompletableFuture().join();
     }
 
     private static HttpRequest.BodyPublisher buildMultipartBody( final List<Map<String, Object>> multipart, String contentType )
@@ -267,12 +351,61 @@ class HttpRequestFactory
         return value != null ? value.toString() : null;
     }
 
-    private static HttpRequest.BodyPublisher byteSourceBodyPublisher( final ByteSource byteSource )
+    /**
+     * Picks the cheapest publisher for the source: files are sent with {@link HttpRequest.BodyPublishers#ofFile},
+     * buffered response bodies from their chunks and small sources of known size from a byte array, all with exact Content-Length.
+     * Other sources are streamed.
+     */
+    static HttpRequest.BodyPublisher byteSourceBodyPublisher( final ByteSource byteSource )
     {
+        try
+        {
+            if ( byteSource instanceof RefPathByteSource && ( (RefPathByteSource) byteSource ).isWholeFile() )
+            {
+                return new SourceBodyPublisher( HttpRequest.BodyPublishers.ofFile( ( (RefPathByteSource) byteSource ).getPath() ),
+                                                byteSource );
+            }
+            if ( byteSource instanceof ChunkedByteSource )
+            {
+                return chunkedBodyPublisher( (ChunkedByteSource) byteSource );
+            }
+
+            final Optional<Long> sizeIfKnown = byteSource.sizeIfKnown();
+            if ( sizeIfKnown.isPresent() && sizeIfKnown.get() <= MAX_IN_MEMORY_REQUEST_BODY_BYTES )
+            {
+                return HttpRequest.BodyPublishers.ofByteArray( byteSource.read() );
+            }
+            return streamBodyPublisher( byteSource, sizeIfKnown );
+        }
+        catch ( IOException e )
+        {
+            throw new UncheckedIOException( e );
+        }
+    }
+
+    private static HttpRequest.BodyPublisher chunkedBodyPublisher( final ChunkedByteSource byteSource )
+    {
+        final List<HttpRequest.BodyPublisher> publishers = new ArrayList<>();
+        for ( ByteBuffer chunk : byteSource.getChunks() )
+        {
+            publishers.add(
+                HttpRequest.BodyPublishers.ofByteArray( chunk.array(), chunk.arrayOffset() + chunk.position(), chunk.remaining() ) );
+        }
+        if ( byteSource.getFile() != null )
+        {
+            publishers.add( byteSourceBodyPublisher( byteSource.getFile() ) );
+        }
+        return new SourceBodyPublisher( HttpRequest.BodyPublishers.concat( publishers.toArray( HttpRequest.BodyPublisher[]::new ) ),
+                                        byteSource );
+    }
+
+    private static HttpRequest.BodyPublisher streamBodyPublisher( final ByteSource byteSource, final Optional<Long> sizeIfKnown )
+    {
+        // the publisher reads into its own buffers, a buffered stream would only add a copy
         final HttpRequest.BodyPublisher bodyPublisher = HttpRequest.BodyPublishers.ofInputStream( () -> {
             try
             {
-                return byteSource.openBufferedStream();
+                return byteSource.openStream();
             }
             catch ( IOException e )
             {
@@ -280,7 +413,6 @@ class HttpRequestFactory
             }
         } );
 
-        final Optional<Long> sizeIfKnown = byteSource.sizeIfKnown();
         if ( sizeIfKnown.isPresent() )
         {
             return HttpRequest.BodyPublishers.fromPublisher( bodyPublisher, sizeIfKnown.get() );
@@ -290,4 +422,34 @@ class HttpRequestFactory
             return bodyPublisher;
         }
     }
+
+    /**
+     * Keeps the source reachable while the request is in flight, a {@link RefPathByteSource} file is deleted once its source is collected.
+     */
+    private static final class SourceBodyPublisher
+        implements HttpRequest.BodyPublisher
+    {
+        private final HttpRequest.BodyPublisher delegate;
+
+        @SuppressWarnings({"unused", "FieldCanBeLocal"})
+        private final ByteSource source;
+
+        SourceBodyPublisher( final HttpRequest.BodyPublisher delegate, final ByteSource source )
+        {
+            this.delegate = delegate;
+            this.source = source;
+        }
+
+        @Override
+        public long contentLength()
+        {
+            return delegate.contentLength();
+        }
+
+        @Override
+        public void subscribe( final Flow.Subscriber<? super ByteBuffer> subscriber )
+        {
+            delegate.subscribe( subscriber );
+        }
+    }
 }
@@ -2,23 +2,37 @@ package com.enonic.lib.http.client;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.UncheckedIOException;
 import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.LongConsumer;
 import java.util.function.Supplier;
 
 import com.github.mizosoft.methanol.MoreBodySubscribers;
 import com.google.common.io.ByteSource;
+import com.google.common.io.MoreFiles;
 
+import com.enonic.xp.script.ScriptValue;
+import com.enonic.xp.script.serializer.MapSerializable;
 import com.enonic.xp.trace.Trace;
 import com.enonic.xp.trace.Tracer;
 
@@ -51,8 +65,16 @@ public final class HttpRequestHandler
 
     private boolean disableHttp2;
 
+    private boolean http2Cleartext;
+
     private Long connectionTimeout;
 
+    private Long headersTimeout;
+
+    private Long totalTimeout;
+
+    private Deadline deadline = Deadline.NONE;
+
     private String authUser;
 
     private String authPassword;
@@ -71,48 +93,434 @@ public final class HttpRequestHandler
 
     private ByteSource clientCertificate;
 
+    private BodyMode bodyMode = BodyMode.AUTO;
+
+    private Long maxResponseBytes;
+
+    private String compressBody;
+
+    private boolean timingsEnabled;
+
+    private ClientMetrics.Destination destination;
+
+    private ExchangeTimings timings;
+
     @SuppressWarnings("unused")
     public ResponseMapper request()
         throws Exception
+    {
+        return withDeadline( this::doRequest );
+    }
+
+    private ResponseMapper doRequest()
+        throws Exception
     {
+        final Trace trace = startTracing();
+        return Tracer.traceEx( trace, () -> {
+            final HttpResponse<Supplier<ByteSource>> response = executeRequest();
+            endTracing( trace, response );
+
+            final ResponseMapper mapper;
+            try
+            {
+                mapper = new ResponseMapper( response, bodyMode );
+            }
+            catch ( RuntimeException e )
+            {
+                destination.failed( e );
+                throw e;
+            }
+            // the JSON body is parsed in a single pass while serialized, a malformed one still counts as a failed exchange
+            mapper.onBodyError( destination::failed );
+            return withTimings( mapper, trace );
+        } );
+    }
+
+    @SuppressWarnings("unused")
+    public ProxyResponseMapper proxy()
+        throws Exception
+    {
+        return withDeadline( this::doProxy );
+    }
+
+    private ProxyResponseMapper doProxy()
+        throws Exception
+    {
+        this.bodyMode = BodyMode.STREAM;
+
         final Trace trace = startTracing();
         final HttpResponse<Supplier<ByteSource>> response = Tracer.traceEx( trace, this::executeRequest );
         endTracing( trace, response );
 
-        return new ResponseMapper( response );
+        return new ProxyResponseMapper( response );
+    }
+
+    /**
+     * Sends the request and reads the response body incrementally, calling the callbacks on the calling thread as data arrives.
+     * A callback returning false stops reading and closes the upstream connection.
+     */
+    @SuppressWarnings("unused")
+    public ResponseMapper stream( final ScriptValue onEvent, final ScriptValue onLine, final ScriptValue onChunk )
+        throws Exception
+    {
+        return withDeadline( () -> doStream( onEvent, onLine, onChunk ) );
+    }
+
+    private ResponseMapper doStream( final ScriptValue onEvent, final ScriptValue onLine, final ScriptValue onChunk )
+        throws Exception
+    {
+        this.bodyMode = BodyMode.STREAM;
+
+        final Trace trace = startTracing();
+        final HttpResponse<Supplier<ByteSource>> response = Tracer.traceEx( trace, this::executeRequest );
+        endTracing( trace, response );
+
+        final EventStreamReader reader =
+            new EventStreamReader( EventStreamReader.formatOf( response.headers() ), new ScriptListener( onEvent, onLine, onChunk ) );
+        try (InputStream body = response.body().get().openStream())
+        {
+            reader.read( body );
+        }
+
+        return withTimings( new ResponseMapper( response, null, BodyMode.NONE ), null );
+    }
+
+    /**
+     * Sends the request and streams a successful (2xx) response body into the file at path, or into the sink function as a one-shot stream.
+     * Size and checksum are computed while the bytes pass through, the body is neither buffered nor read twice.
+     * Bodies of other responses are discarded.
+     * <p>
+     * With segments, a GET of a resource that supports byte ranges is fetched as that many ranges in parallel instead, see {@link RangeDownload}.
+     */
+    @SuppressWarnings("unused")
+    public DownloadResponseMapper download( final String path, final ScriptValue sink, final String checksum, final Integer segments )
+        throws Exception
+    {
+        return withDeadline( () -> doDownload( path, sink, checksum, segments ) );
+    }
+
+    private DownloadResponseMapper doDownload( final String path, final ScriptValue sink, final String checksum, final Integer segments )
+        throws Exception
+    {
+        final String checksumName = DigestingInputStream.checksumName( requireNonNullElse( checksum, "sha256" ) );
+        final MessageDigest digest = DigestingInputStream.newDigest( checksumName );
+        this.bodyMode = BodyMode.STREAM;
+
+        if ( segments != null && ( method == null || "GET".equalsIgnoreCase( method ) ) )
+        {
+            final DownloadResponseMapper response = rangeDownload( path, sink, checksumName, digest, segments );
+            if ( response != null )
+            {
+                return response;
+            }
+        }
+
+        final Trace trace = startTracing();
+        final HttpResponse<Supplier<ByteSource>> response = Tracer.traceEx( trace, this::executeRequest );
+        endTracing( trace, response );
+
+        final ResponseMapper responseMapper = new ResponseMapper( response, null, BodyMode.NONE );
+        try (DigestingInputStream body = new DigestingInputStream( response.body().get().openStream(), digest ))
+        {
+            if ( response.statusCode() < 200 || response.statusCode() > 299 )
+            {
+                return new DownloadResponseMapper( withTimings( responseMapper, null ), checksumName, null, -1 );
+            }
+
+            if ( path != null )
+            {
+                writeToFile( body, Path.of( path ) );
+            }
+            else
+            {
+                sink.call( new StreamingByteSource( body, streamedSize( method, response.statusCode(), response.headers() ) ) );
+                if ( !body.isComplete() )
+                {
+                    throw new IOException( "Download sink did not read the whole response body" );
+                }
+            }
+            return new DownloadResponseMapper( withTimings( responseMapper, null ), checksumName, body.hexDigest(), body.getCount() );
+        }
+    }
+
+    /**
+     * Probes the resource with HEAD and, if it supports byte ranges, downloads it in segments into the file at path, or into a temporary
+     * file handed to the sink. The checksum is computed by reading the assembled file.
+     *
+     * @return null if the resource can't be downloaded in ranges
+     */
+    private DownloadResponseMapper rangeDownload( final String path, final ScriptValue sink, final String checksumName,
+                                                  final MessageDigest digest, final int segments )
+        throws Exception
+    {
+        this.timings = new ExchangeTimings();
+        final HttpRequest request = buildRequest();
+        timings.mark( ExchangeTimings.Phase.REQUEST_BUILT );
+        final HttpClient client = httpClient( request );
+        timings.mark( ExchangeTimings.Phase.CLIENT_READY );
+
+        final Trace trace = startTracing();
+        final HttpResponse<Void> probe = Tracer.traceEx( trace, () -> send( client, destination, timings, deadline,
+                                                                            RangeDownload.probeRequest( request ),
+                                                                            HttpResponse.BodyHandlers.discarding() ) );
+        endTracing( trace, probe );
+
+        if ( !RangeDownload.supportsRanges( probe.statusCode(), probe.headers() ) )
+        {
+            return null;
+        }
+
+        final Duration timeout = Duration.ofMillis( requireNonNullElse( readTimeout, DEFAULT_READ_TIMEOUT ) );
+        final HttpResponse.BodyHandler<InputStream> rangeBodyHandler = responseInfo -> HttpResponse.BodySubscribers.mapping(
+            MoreBodySubscribers.withReadTimeout( HttpResponse.BodySubscribers.ofInputStream(), deadline.cap( timeout ) ), deadline::guard );
+        final RangeDownload download =
+            new RangeDownload( request, rangeRequest -> send( client, destination, timings, deadline, rangeRequest, rangeBodyHandler ),
+                               probe.headers() );
+        if ( maxResponseBytes != null && download.size() > maxResponseBytes )
+        {
+            throw ResponseSizeLimit.exceeded( maxResponseBytes );
+        }
+
+        final Path file = path != null ? Path.of( path ) : Files.createTempFile( "xphttp", ".tmp" );
+        try
+        {
+            download.run( file, segments );
+        }
+        catch ( Exception e )
+        {
+            Files.deleteIfExists( file );
+            throw e;
+        }
+
+        final ByteSource source = path != null ? MoreFiles.asByteSource( file ) : new RefPathByteSource( file );
+        final String hexDigest;
+        try (DigestingInputStream in = new DigestingInputStream( source.openStream(), digest ))
+        {
+            in.transferTo( OutputStream.nullOutputStream() );
+            hexDigest = in.hexDigest();
+        }
+        if ( sink != null )
+        {
+            sink.call( source );
+        }
+        return new DownloadResponseMapper( withTimings( new ResponseMapper( probe, null, BodyMode.NONE ), null ), checksumName, hexDigest,
+                                           download.size() );
+    }
+
+    /**
+     * Marks the exchange as done and attaches the phase timings to the trace, and to the response if requested.
+     * Slow exchanges are logged.
+     */
+    private ResponseMapper withTimings( final ResponseMapper mapper, final Trace trace )
+    {
+        timings.mark( ExchangeTimings.Phase.MAPPED );
+        timings.trace( trace );
+        SlowCallLog.INSTANCE.check( method, url, mapper.status(), mapper.bodySize(), destination, timings );
+        if ( timingsEnabled )
+        {
+            mapper.setTimings( timings );
+        }
+        return mapper;
+    }
+
+    private static void writeToFile( final InputStream body, final Path path )
+        throws IOException
+    {
+        try (OutputStream out = Files.newOutputStream( path ))
+        {
+            body.transferTo( out );
+        }
+        catch ( IOException | RuntimeException e )
+        {
+            Files.deleteIfExists( path );
+            throw e;
+        }
     }
 
     private HttpResponse<Supplier<ByteSource>> executeRequest()
         throws IOException, InterruptedException
     {
-        final HttpRequest request = HttpRequestFactory.getHttpRequest( HttpRequestFactory.params()
-                                                                           .method( method )
-                                                                           .url( url )
-                                                                           .headers( headers )
-                                                                           .contentType( contentType )
-                                                                           .form( params )
-                                                                           .queryParams( queryParams )
-                                                                           .body( body )
-                                                                           .multipart( multipart )
-                                                                           .build() );
-
-        final HttpClient client = HttpClientFactory.getHttpClient( HttpClientFactory.params()
-                                                                       .disableHttp2( disableHttp2 || !Utils.isSecure( request.uri() ) )
-                                                                       .connectTimeout( connectionTimeout )
-                                                                       .authUser( authUser )
-                                                                       .authPassword( authPassword )
-                                                                       .proxyUser( proxyUser )
-                                                                       .proxyPassword( proxyPassword )
-                                                                       .proxyHost( proxyHost )
-                                                                       .proxyPort( proxyPort )
-                                                                       .followRedirects( followRedirects )
-                                                                       .certificates( certificates )
-                                                                       .clientCertificate( clientCertificate )
-                                                                       .build(), request.uri() );
-
-        return client.send( request, mapToFullyReadByteSource(
-            MoreBodySubscribers.withReadTimeout( HttpResponse.BodySubscribers.ofInputStream(),
-                                                 Duration.ofMillis( requireNonNullElse( readTimeout, DEFAULT_READ_TIMEOUT ) ) ) ) );
+        this.timings = new ExchangeTimings();
+        final HttpRequest request = buildRequest();
+        timings.mark( ExchangeTimings.Phase.REQUEST_BUILT );
+        final HttpClient client = httpClient( request );
+        timings.mark( ExchangeTimings.Phase.CLIENT_READY );
+        return send( client, destination, timings, deadline, request, bodyHandler() );
+    }
+
+    /**
+     * Runs the call within its deadline: the totalTimeout from now, or the deadline of the enclosing call if that is earlier.
+     * Calls made from callbacks of this call inherit the deadline.
+     * A call failing after its exchange started is checked for the slow call log, as successful ones are when mapped.
+     */
+    private <T> T withDeadline( final Callable<T> call )
+        throws Exception
+    {
+        this.timings = null;
+        this.destination = null;
+        this.deadline = Deadline.after( totalTimeout );
+        try
+        {
+            return deadline.scope( call );
+        }
+        catch ( Exception e )
+        {
+            if ( timings != null && timings.millis( ExchangeTimings.Phase.MAPPED ) < 0 )
+            {
+                SlowCallLog.INSTANCE.checkFailed( method, url, e, destination, timings );
+            }
+            throw e;
+        }
+    }
+
+    private HttpRequest buildRequest()
+        throws HttpTimeoutException
+    {
+        // fails fast when an inherited deadline has already passed
+        deadline.check();
+        return HttpRequestFactory.getHttpRequest( HttpRequestFactory.params()
+                                                      .method( method )
+                                                      .url( url )
+                                                      .headers( headers )
+                                                      .contentType( contentType )
+                                                      .form( params )
+                                                      .queryParams( queryParams )
+                                                      .body( body )
+                                                      .multipart( multipart )
+                                                      .compressBody( compressBody )
+                                                      .build() );
+    }
+
+    /**
+     * Returns the cached client for the request, and selects the destination its metrics are recorded for.
+     */
+    private HttpClient httpClient( final HttpRequest request )
+        throws IOException
+    {
+        // insecure connections use HTTP/2 only when h2c is opted in, servers that don't support it would see an unexpected Upgrade
+        final boolean http2 = !disableHttp2 && ( http2Cleartext || Utils.isSecure( request.uri() ) );
+        final HttpClientFactory.ClientParams clientParams = HttpClientFactory.params()
+                                                                             .disableHttp2( !http2 )
+                                                                             .connectTimeout( connectionTimeout )
+                                                                             .headersTimeout( headersTimeout )
+                                                                             .authUser( authUser )
+                                                                             .authPassword( authPassword )
+                                                                             .proxyUser( proxyUser )
+                                                                             .proxyPassword( proxyPassword )
+                                                                             .proxyHost( proxyHost )
+                                                                             .proxyPort( proxyPort )
+                                                                             .followRedirects( followRedirects )
+                                                                             .certificates( certificates )
+                                                                             .clientCertificate( clientCertificate )
+                                                                             .build();
+        this.destination = ClientMetrics.destination( HttpClientFactory.keyForRequest( request.uri(), clientParams.proxy ) );
+        return HttpClientFactory.getHttpClient( clientParams, request.uri() );
+    }
+
+    /**
+     * Sends the request and waits for the response headers. If the deadline passes first, the exchange is cancelled.
+     */
+    private static <T> HttpResponse<T> send( final HttpClient client, final ClientMetrics.Destination destination,
+                                             final ExchangeTimings timings, final Deadline deadline, final HttpRequest request,
+                                             final HttpResponse.BodyHandler<T> bodyHandler )
+        throws IOException, InterruptedException
+    {
+        deadline.check();
+        destination.started();
+        final long start = System.nanoTime();
+        final CompletableFuture<HttpResponse<T>> future =
+            client.sendAsync( destination.countOut( request ), timings.observe( destination.countIn( bodyHandler ) ) );
+        timings.mark( ExchangeTimings.Phase.SENT );
+        try
+        {
+            final HttpResponse<T> response =
+                deadline.isSet() ? future.get( deadline.remainingNanos(), TimeUnit.NANOSECONDS ) : future.get();
+            destination.exchanged( response.statusCode(), System.nanoTime() - start );
+            return response;
+        }
+        catch ( InterruptedException e )
+        {
+            future.cancel( true );
+            throw e;
+        }
+        catch ( TimeoutException e )
+        {
+            future.cancel( true );
+            final HttpTimeoutException expired = deadline.expired();
+            destination.failed( expired );
+            throw expired;
+        }
+        catch ( ExecutionException e )
+        {
+            final Throwable cause = e.getCause();
+            destination.failed( cause );
+            if ( cause instanceof IOException )
+            {
+                throw (IOException) cause;
+            }
+            if ( cause instanceof RuntimeException )
+            {
+                throw (RuntimeException) cause;
+            }
+            if ( cause instanceof Error )
+            {
+                throw (Error) cause;
+            }
+            throw new IOException( cause.getMessage(), cause );
+        }
+        finally
+        {
+            destination.completed();
+        }
+    }
+
+    private HttpResponse.BodyHandler<Supplier<ByteSource>> bodyHandler()
+    {
+        final HttpResponse.BodyHandler<Supplier<ByteSource>> handler = unlimitedBodyHandler();
+        return maxResponseBytes == null ? handler : ResponseSizeLimit.checkContentLength( handler, maxResponseBytes );
+    }
+
+    private HttpResponse.BodyHandler<Supplier<ByteSource>> unlimitedBodyHandler()
+    {
+        final Duration timeout = Duration.ofMillis( requireNonNullElse( readTimeout, DEFAULT_READ_TIMEOUT ) );
+        if ( bodyMode == BodyMode.NONE )
+        {
+            final HttpResponse.BodySubscriber<Supplier<ByteSource>> discarding = HttpResponse.BodySubscribers.replacing( () -> null );
+            return responseInfo -> MoreBodySubscribers.withReadTimeout(
+                maxResponseBytes == null ? discarding : ResponseSizeLimit.limit( discarding, maxResponseBytes ), deadline.cap( timeout ) );
+        }
+
+        return responseInfo -> {
+            final HttpResponse.BodySubscriber<InputStream> bodyStream =
+                MoreBodySubscribers.withReadTimeout( HttpResponse.BodySubscribers.ofInputStream(), deadline.cap( timeout ) );
+            final HttpResponse.BodySubscriber<InputStream> upstream = HttpResponse.BodySubscribers.mapping(
+                bodyStream, is -> deadline.guard( limit( ContentDecoders.decode( is, responseInfo.headers() ) ) ) );
+
+            final HttpResponse.BodyHandler<Supplier<ByteSource>> handler = bodyMode == BodyMode.STREAM
+                ? mapToStreamingByteSource( upstream, streamedSize( method, responseInfo.statusCode(), responseInfo.headers() ) )
+                : mapToFullyReadByteSource( upstream, this::spilled, this::bodyRead );
+            return handler.apply( responseInfo );
+        };
+    }
+
+    private void spilled()
+    {
+        destination.spilled();
+        timings.mark( ExchangeTimings.Phase.SPILL_STARTED );
+    }
+
+    private void bodyRead( final long spilledBytes )
+    {
+        timings.mark( ExchangeTimings.Phase.BODY_READ );
+        if ( spilledBytes > 0 )
+        {
+            destination.spilledBytes( spilledBytes );
+        }
+    }
+
+    private InputStream limit( final InputStream body )
+    {
+        return maxResponseBytes == null ? body : ResponseSizeLimit.limit( body, maxResponseBytes );
     }
 
     private Trace startTracing()
@@ -135,6 +543,7 @@ public final class HttpRequestHandler
             return;
         }
 
+        timings.trace( trace );
         trace.put( "method", response.request().method() );
         trace.put( "status", response.statusCode() );
         trace.put( "type", response.headers().firstValue( "content-type" ).orElse( null ) );
@@ -147,6 +556,18 @@ public final class HttpRequestHandler
 
     public static HttpResponse.BodyHandler<Supplier<ByteSource>> mapToFullyReadByteSource(
         final HttpResponse.BodySubscriber<InputStream> upstream )
+    {
+        return mapToFullyReadByteSource( upstream, () -> {
+        }, spilledBytes -> {
+        } );
+    }
+
+    /**
+     * @param onSpill called when the body is too large to be kept in memory and is spilled to a temporary file
+     * @param onRead called when the whole body was read, with the number of bytes written to the temporary file
+     */
+    static HttpResponse.BodyHandler<Supplier<ByteSource>> mapToFullyReadByteSource( final HttpResponse.BodySubscriber<InputStream> upstream,
+                                                                                  final Runnable onSpill, final LongConsumer onRead )
     {
         return responseInfo -> HttpResponse.BodySubscribers.mapping( upstream, is -> () -> {
             try (InputStream body = is)
@@ -155,17 +576,30 @@ public final class HttpRequestHandler
 
                 if ( processor.totalRead == 0 )
                 {
+                    onRead.accept( 0 );
                     return ByteSource.empty();
                 }
                 else if ( processor.readFully )
                 {
-                    return ByteSource.concat( processor.chunks );
+                    onRead.accept( 0 );
+                    return new ChunkedByteSource( processor.chunks, null );
                 }
                 else
                 {
+                    onSpill.run();
                     final Path tempFile = Files.createTempFile( "xphttp", ".tmp" );
-                    Files.copy( body, tempFile, StandardCopyOption.REPLACE_EXISTING );
-                    return ByteSource.concat( ByteSource.concat( processor.chunks ), new RefPathByteSource( tempFile ) );
+                    final long spilled;
+                    try
+                    {
+                        spilled = Files.copy( body, tempFile, StandardCopyOption.REPLACE_EXISTING );
+                    }
+                    catch ( IOException e )
+                    {
+                        Files.deleteIfExists( tempFile );
+                        throw e;
+                    }
+                    onRead.accept( spilled );
+                    return new ChunkedByteSource( processor.chunks, new RefPathByteSource( tempFile ) );
                 }
             }
             catch ( IOException e )
@@ -175,6 +609,33 @@ public final class HttpRequestHandler
         } );
     }
 
+    public static HttpResponse.BodyHandler<Supplier<ByteSource>> mapToStreamingByteSource(
+        final HttpResponse.BodySubscriber<InputStream> upstream )
+    {
+        return mapToStreamingByteSource( upstream, -1 );
+    }
+
+    private static HttpResponse.BodyHandler<Supplier<ByteSource>> mapToStreamingByteSource(
+        final HttpResponse.BodySubscriber<InputStream> upstream, final long size )
+    {
+        return responseInfo -> HttpResponse.BodySubscribers.mapping( upstream, is -> () -> new StreamingByteSource( is, size ) );
+    }
+
+    /**
+     * Size of the response body as read by the script, known without reading it from the Content-Length, unless the body is decoded.
+     * Responses to HEAD, informational, 204 and 304 responses have no body whatever their Content-Length says.
+     *
+     * @return size of the body, -1 if unknown
+     */
+    static long streamedSize( final String method, final int status, final HttpHeaders headers )
+    {
+        if ( "HEAD".equalsIgnoreCase( method ) || status < 200 || status == 204 || status == 304 )
+        {
+            return 0;
+        }
+        return Utils.getContentLength( ContentDecoders.decodedHeaders( headers ) );
+    }
+
     @SuppressWarnings("unused")
     public void setContentType( final String contentType )
     {
@@ -222,6 +683,12 @@ public final class HttpRequestHandler
         this.disableHttp2 = disableHttp2;
     }
 
+    @SuppressWarnings("unused")
+    public void setHttp2Cleartext( final boolean http2Cleartext )
+    {
+        this.http2Cleartext = http2Cleartext;
+    }
+
     @SuppressWarnings("unused")
     public void setConnectionTimeout( final Long value )
     {
@@ -234,6 +701,18 @@ public final class HttpRequestHandler
         this.readTimeout = value;
     }
 
+    @SuppressWarnings("unused")
+    public void setHeadersTimeout( final Long value )
+    {
+        this.headersTimeout = value;
+    }
+
+    @SuppressWarnings("unused")
+    public void setTotalTimeout( final Long value )
+    {
+        this.totalTimeout = value;
+    }
+
     @SuppressWarnings("unused")
     public void setMultipart( final List<Map<String, Object>> multipart )
     {
@@ -294,11 +773,75 @@ public final class HttpRequestHandler
         this.clientCertificate = clientCertificate;
     }
 
+    @SuppressWarnings("unused")
+    public void setBodyMode( final String bodyMode )
+    {
+        this.bodyMode = BodyMode.from( bodyMode );
+    }
+
+    @SuppressWarnings("unused")
+    public void setMaxResponseBytes( final Long maxResponseBytes )
+    {
+        this.maxResponseBytes = maxResponseBytes;
+    }
+
+    @SuppressWarnings("unused")
+    public void setCompressBody( final String compressBody )
+    {
+        this.compressBody = compressBody;
+    }
+
+    @SuppressWarnings("unused")
+    public void setTimings( final boolean timings )
+    {
+        this.timingsEnabled = timings;
+    }
+
+    private static final class ScriptListener
+        implements EventStreamReader.Listener
+    {
+        private final ScriptValue onEvent;
+
+        private final ScriptValue onLine;
+
+        private final ScriptValue onChunk;
+
+        ScriptListener( final ScriptValue onEvent, final ScriptValue onLine, final ScriptValue onChunk )
+        {
+            this.onEvent = onEvent;
+            this.onLine = onLine;
+            this.onChunk = onChunk;
+        }
+
+        @Override
+        public boolean onChunk( final byte[] bytes )
+        {
+            return onChunk == null || proceed( onChunk.call( ByteSource.wrap( bytes ) ) );
+        }
+
+        @Override
+        public boolean onLine( final String line )
+        {
+            return onLine == null || proceed( onLine.call( line ) );
+        }
+
+        @Override
+        public boolean onEvent( final MapSerializable event )
+        {
+            return onEvent == null || proceed( onEvent.call( event ) );
+        }
+
+        private static boolean proceed( final ScriptValue result )
+        {
+            return result == null || !result.isValue() || !Boolean.FALSE.equals( result.getValue() );
+        }
+    }
+
     static class BufferedBytesProcessor
     {
         private static final int BUFFER_SIZE = 8192;
 
-        final List<ByteSource> chunks = new ArrayList<>();
+        final List<ByteBuffer> chunks = new ArrayList<>();
 
         int totalRead;
 
@@ -331,7 +874,7 @@ public final class HttpRequestHandler
 
         boolean processBytes( final byte[] buf, final int len )
         {
-            chunks.add( ByteSource.wrap( Arrays.copyOfRange( buf, 0, len ) ) );
+            chunks.add( ByteBuffer.wrap( Arrays.copyOfRange( buf, 0, len ) ) );
             totalRead += len;
             return totalRead < MAX_IN_MEMORY_BODY_STREAM_BYTES;
         }
@@ -0,0 +1,418 @@
+package com.enonic.lib.http.client;
+
+import java.io.IOException;
+import java.io.Reader;
+
+import com.enonic.xp.script.serializer.MapGenerator;
+
+/**
+ * Streaming JSON parser that emits parsed values directly into a {@link MapGenerator}, without building an intermediate string or tree.
+ * Integral numbers that fit into int are emitted as Integer, all other numbers, and -0, as Double, same as JSON.parse would see them.
+ * Numbers follow the strict grammar of RFC 8259, like JSON.parse leading zeros, a bare '-' or '.' are rejected.
+ */
+final class JsonBodyParser
+{
+    private static final int MAX_DEPTH = 1000;
+
+    private final Reader reader;
+
+    private final char[] buf = new char[8192];
+
+    private int pos;
+
+    private int limit;
+
+    private long offset;
+
+    private int depth;
+
+    private final StringBuilder sb = new StringBuilder();
+
+    private JsonBodyParser( final Reader reader )
+    {
+        this.reader = reader;
+    }
+
+    /**
+     * Parses a single JSON value from the reader and emits it to the generator.
+     *
+     * @param reader source of JSON text
+     * @param gen    generator to emit the value into
+     * @param name   name of the value in the enclosing map, or null if the generator is in array context
+     * @throws IOException if reading fails or the text is not valid JSON
+     */
+    static void parse( final Reader reader, final MapGenerator gen, final String name )
+        throws IOException
+    {
+        final JsonBodyParser parser = new JsonBodyParser( reader );
+        parser.parseValue( gen, name, parser.nextNonWhitespace() );
+        if ( parser.nextNonWhitespace() != -1 )
+        {
+            throw parser.error( "Unexpected data after JSON value" );
+        }
+    }
+
+    private void parseValue( final MapGenerator gen, final String name, final int c )
+        throws IOException
+    {
+        switch ( c )
+        {
+            case '{':
+                parseObject( gen, name );
+                break;
+            case '[':
+                parseArray( gen, name );
+                break;
+            case '"':
+                emit( gen, name, parseString() );
+                break;
+            case 't':
+                expectLiteral( "rue" );
+                emit( gen, name, Boolean.TRUE );
+                break;
+            case 'f':
+                expectLiteral( "alse" );
+                emit( gen, name, Boolean.FALSE );
+                break;
+            case 'n':
+                expectLiteral( "ull" );
+                emit( gen, name, null );
+                break;
+            case -1:
+                throw error( "Unexpected end of JSON input" );
+            default:
+                if ( c == '-' || ( c >= '0' && c <= '9' ) )
+                {
+                    emit( gen, name, parseNumber( c ) );
+                }
+                else
+                {
+                    throw error( "Unexpected character '" + (char) c + "'" );
+                }
+        }
+    }
+
+    private void parseObject( final MapGenerator gen, final String name )
+        throws IOException
+    {
+        enter();
+        if ( name == null )
+        {
+            gen.map();
+        }
+        else
+        {
+            gen.map( name );
+        }
+
+        int c = nextNonWhitespace();
+        if ( c != '}' )
+        {
+            while ( true )
+            {
+                if ( c != '"' )
+                {
+                    throw error( "Expected property name" );
+                }
+                final String key = parseString();
+                if ( nextNonWhitespace() != ':' )
+                {
+                    throw error( "Expected ':'" );
+                }
+                parseValue( gen, key, nextNonWhitespace() );
+
+                c = nextNonWhitespace();
+                if ( c == '}' )
+                {
+                    break;
+                }
+                if ( c != ',' )
+                {
+                    throw error( "Expected ',' or '}'" );
+                }
+                c = nextNonWhitespace();
+            }
+        }
+        gen.end();
+        depth--;
+    }
+
+    private void parseArray( final MapGenerator gen, final String name )
+        throws IOException
+    {
+        enter();
+        if ( name == null )
+        {
+            gen.array();
+        }
+        else
+        {
+            gen.array( name );
+        }
+
+        int c = nextNonWhitespace();
+        if ( c != ']' )
+        {
+            while ( true )
+            {
+                parseValue( gen, null, c );
+
+                c = nextNonWhitespace();
+                if ( c == ']' )
+                {
+                    break;
+                }
+                if ( c != ',' )
+                {
+                    throw error( "Expected ',' or ']'" );
+                }
+                c = nextNonWhitespace();
+            }
+        }
+        gen.end();
+        depth--;
+    }
+
+    private String parseString()
+        throws IOException
+    {
+        sb.setLength( 0 );
+        while ( true )
+        {
+            if ( pos == limit && !fill() )
+            {
+                throw error( "Unterminated string" );
+            }
+
+            // copy the run of plain characters at once
+            final int start = pos;
+            while ( pos < limit )
+            {
+                final char ch = buf[pos];
+                if ( ch == '"' || ch == '\\' || ch < 0x20 )
+                {
+                    break;
+                }
+                pos++;
+            }
+            sb.append( buf, start, pos - start );
+
+            if ( pos == limit )
+            {
+                continue;
+            }
+
+            final char ch = buf[pos++];
+            if ( ch == '"' )
+            {
+                return sb.toString();
+            }
+            if ( ch != '\\' )
+            {
+                throw error( "Unescaped control character in string" );
+            }
+            parseEscape();
+        }
+    }
+
+    private void parseEscape()
+        throws IOException
+    {
+        final int c = read();
+        switch ( c )
+        {
+            case '"':
+            case '\\':
+            case '/':
+                sb.append( (char) c );
+                break;
+            case 'b':
+                sb.append( '\b' );
+                break;
+            case 'f':
+                sb.append( '\f' );
+                break;
+            case 'n':
+                sb.append( '\n' );
+                break;
+            case 'r':
+                sb.append( '\r' );
+                break;
+            case 't':
+                sb.append( '\t' );
+                break;
+            case 'u':
+                int value = 0;
+                for ( int i = 0; i < 4; i++ )
+                {
+                    final int digit = Character.digit( read(), 16 );
+                    if ( digit < 0 )
+                    {
+                        throw error( "Invalid unicode escape" );
+                    }
+                    value = ( value << 4 ) | digit;
+                }
+                sb.append( (char) value );
+                break;
+            default:
+                throw error( "Invalid escape sequence" );
+        }
+    }
+
+    /**
+     * Parses a number of the RFC 8259 grammar: {@code -?(0|[1-9][0-9]*)(\.[0-9]+)?([eE][+-]?[0-9]+)?}.
+     * -0 is emitted as the double -0.0, as JSON.parse keeps the sign.
+     */
+    private Object parseNumber( final int first )
+        throws IOException
+    {
+        sb.setLength( 0 );
+        sb.append( (char) first );
+        final int integerStart = first == '-' ? 1 : 0;
+        appendDigits();
+        final int integerDigits = sb.length() - integerStart;
+        if ( integerDigits == 0 )
+        {
+            throw error( "Invalid number '" + sb + "'" );
+        }
+        if ( integerDigits > 1 && sb.charAt( integerStart ) == '0' )
+        {
+            throw error( "Leading zero in number '" + sb + "'" );
+        }
+
+        boolean integral = true;
+        if ( peek() == '.' )
+        {
+            integral = false;
+            sb.append( buf[pos++] );
+            if ( appendDigits() == 0 )
+            {
+                throw error( "Invalid number '" + sb + "'" );
+            }
+        }
+        final int exponent = peek();
+        if ( exponent == 'e' || exponent == 'E' )
+        {
+            integral = false;
+            sb.append( buf[pos++] );
+            final int sign = peek();
+            if ( sign == '+' || sign == '-' )
+            {
+                sb.append( buf[pos++] );
+            }
+            if ( appendDigits() == 0 )
+            {
+                throw error( "Invalid number '" + sb + "'" );
+            }
+        }
+
+        final String text = sb.toString();
+        if ( integral && text.length() <= 11 && !"-0".equals( text ) )
+        {
+            final long value = Long.parseLong( text );
+            if ( value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE )
+            {
+                return (int) value;
+            }
+            return (double) value;
+        }
+        return Double.parseDouble( text );
+    }
+
+    /**
+     * @return number of digits appended
+     */
+    private int appendDigits()
+        throws IOException
+    {
+        int count = 0;
+        while ( peek() >= '0' && buf[pos] <= '9' )
+        {
+            sb.append( buf[pos++] );
+            count++;
+        }
+        return count;
+    }
+
+    private int peek()
+        throws IOException
+    {
+        return pos < limit || fill() ? buf[pos] : -1;
+    }
+
+    private void expectLiteral( final String rest )
+        throws IOException
+    {
+        for ( int i = 0; i < rest.length(); i++ )
+        {
+            if ( read() != rest.charAt( i ) )
+            {
+                throw error( "Invalid literal" );
+            }
+        }
+    }
+
+    private static void emit( final MapGenerator gen, final String name, final Object value )
+    {
+        if ( name == null )
+        {
+            gen.value( value );
+        }
+        else
+        {
+            gen.value( name, value );
+        }
+    }
+
+    private void enter()
+        throws IOException
+    {
+        if ( ++depth > MAX_DEPTH )
+        {
+            throw error( "JSON nesting is too deep" );
+        }
+    }
+
+    private int nextNonWhitespace()
+        throws IOException
+    {
+        while ( true )
+        {
+            final int c = read();
+            if ( c != ' ' && c != '\n' && c != '\r' && c != '\t' )
+            {
+                return c;
+            }
+        }
+    }
+
+    private int read()
+        throws IOException
+    {
+        if ( pos == limit && !fill() )
+        {
+            return -1;
+        }
+        return buf[pos++];
+    }
+
+    private boolean fill()
+        throws IOException
+    {
+        offset += limit;
+        pos = 0;
+        limit = 0;
+        final int n = reader.read( buf );
+        if ( n <= 0 )
+        {
+            return false;
+        }
+        limit = n;
+        return true;
+    }
+
+    private IOException error( final String message )
+    {
+        return new IOException( "Invalid JSON response body: " + message + " at position " + ( offset + pos ) );
+    }
+}
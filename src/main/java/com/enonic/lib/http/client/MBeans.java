@@ -0,0 +1,123 @@
+package com.enonic.lib.http.client;
+
+import java.lang.management.ManagementFactory;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.osgi.framework.Bundle;
+import org.osgi.framework.FrameworkUtil;
+
+/**
+ * Registers the MXBeans of the library on the platform MBean server. Every app embeds its own copy of the library, so the names
+ * carry the app and apps never replace each other's MBeans. The MBeans are unregistered when the bundle of the app stops,
+ * see {@link BundleStop}.
+ */
+final class MBeans
+{
+    static final String DOMAIN = "com.enonic.lib.http.client";
+
+    /**
+     * Symbolic name of the bundle the library is embedded in, which is the app key, or "standalone" outside OSGi.
+     */
+    static final String APP = appName();
+
+    private static final Set<ObjectName> REGISTERED = ConcurrentHashMap.newKeySet();
+
+    static
+    {
+        BundleStop.register( MBeans::unregisterAll );
+    }
+
+    private MBeans()
+    {
+    }
+
+    /**
+     * @return name of an MBean of the app, e.g. {@code com.enonic.lib.http.client:type=Destination,app="my.app",name="https://host:443"}
+     */
+    static String name( final String type, final String name )
+    {
+        final String typeAndApp = DOMAIN + ":type=" + type + ",app=" + ObjectName.quote( APP );
+        return name == null ? typeAndApp : typeAndApp + ",name=" + ObjectName.quote( name );
+    }
+
+    /**
+     * Registers the MBean, replacing one left under the same name by a previous deployment of this app that didn't stop cleanly.
+     * Failures are ignored, the same data stays available through the script API.
+     */
+    static void register( final Object mbean, final String name )
+    {
+        try
+        {
+            final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            final ObjectName objectName = new ObjectName( name );
+            if ( server.isRegistered( objectName ) )
+            {
+                server.unregisterMBean( objectName );
+            }
+            server.registerMBean( mbean, objectName );
+            REGISTERED.add( objectName );
+        }
+        catch ( JMException | RuntimeException e )
+        {
+            // ignored
+        }
+    }
+
+    static void unregister( final String name )
+    {
+        try
+        {
+            final ObjectName objectName = new ObjectName( name );
+            if ( REGISTERED.remove( objectName ) )
+            {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean( objectName );
+            }
+        }
+        catch ( JMException | RuntimeException e )
+        {
+            // already unregistered
+        }
+    }
+
+    /**
+     * Unregisters all MBeans registered by this copy of the library.
+     */
+    static void unregisterAll()
+    {
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for ( ObjectName objectName : REGISTERED )
+        {
+            REGISTERED.remove( objectName );
+            try
+            {
+                server.unregisterMBean( objectName );
+            }
+            catch ( JMException | RuntimeException e )
+            {
+                // already unregistered
+            }
+        }
+    }
+
+    private static String appName()
+    {
+        try
+        {
+            final Bundle bundle = FrameworkUtil.getBundle( MBeans.class );
+            if ( bundle != null && bundle.getSymbolicName() != null )
+            {
+                return bundle.getSymbolicName();
+            }
+        }
+        catch ( LinkageError e )
+        {
+            // not running in OSGi
+        }
+        return "standalone";
+    }
+}
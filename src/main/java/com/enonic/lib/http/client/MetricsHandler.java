@@ -0,0 +1,25 @@
+package com.enonic.lib.http.client;
+
+public final class MetricsHandler
+{
+    @SuppressWarnings("unused")
+    public MetricsMapper metrics()
+    {
+        return new MetricsMapper();
+    }
+
+    /**
+     * @return the metrics in the Prometheus text exposition format
+     */
+    @SuppressWarnings("unused")
+    public String prometheus()
+    {
+        return PrometheusExporter.export();
+    }
+
+    @SuppressWarnings("unused")
+    public String prometheusContentType()
+    {
+        return PrometheusExporter.CONTENT_TYPE;
+    }
+}
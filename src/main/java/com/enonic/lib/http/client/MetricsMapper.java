@@ -0,0 +1,74 @@
+package com.enonic.lib.http.client;
+
+import java.util.Map;
+
+import org.HdrHistogram.Histogram;
+
+import com.enonic.xp.script.serializer.MapGenerator;
+import com.enonic.xp.script.serializer.MapSerializable;
+
+/**
+ * Snapshot of the per-destination metrics and the response decoding statistics. Latencies are in milliseconds.
+ */
+public final class MetricsMapper
+    implements MapSerializable
+{
+    @Override
+    public void serialize( final MapGenerator gen )
+    {
+        gen.array( "destinations" );
+        for ( ClientMetrics.Destination destination : ClientMetrics.destinations() )
+        {
+            gen.map();
+            serializeDestination( destination, gen );
+            gen.end();
+        }
+        gen.end();
+
+        gen.map( "decoding" );
+        for ( Map.Entry<String, ContentDecoders.Stats> e : ContentDecoders.stats().entrySet() )
+        {
+            final ContentDecoders.Stats stats = e.getValue();
+            gen.map( e.getKey() );
+            gen.value( "responses", stats.getResponses() );
+            gen.value( "encodedBytes", stats.getEncodedBytes() );
+            gen.value( "decodedBytes", stats.getDecodedBytes() );
+            gen.value( "ratio", stats.getRatio() );
+            gen.end();
+        }
+        gen.end();
+    }
+
+    private static void serializeDestination( final ClientMetrics.Destination destination, final MapGenerator gen )
+    {
+        gen.value( "destination", destination.getDestination() );
+        gen.value( "requests", destination.getRequests() );
+        gen.value( "inFlight", destination.getInFlight() );
+
+        gen.map( "responses" );
+        gen.value( "1xx", destination.getResponses1xx() );
+        gen.value( "2xx", destination.getResponses2xx() );
+        gen.value( "3xx", destination.getResponses3xx() );
+        gen.value( "4xx", destination.getResponses4xx() );
+        gen.value( "5xx", destination.getResponses5xx() );
+        gen.end();
+
+        gen.value( "errors", destination.getErrors() );
+        gen.value( "timeouts", destination.getTimeouts() );
+        gen.value( "spills", destination.getSpills() );
+        gen.value( "spilledBytes", destination.getSpilledBytes() );
+        gen.value( "bytesIn", destination.getBytesIn() );
+        gen.value( "bytesOut", destination.getBytesOut() );
+
+        final Histogram latency = destination.latencySnapshot();
+        gen.map( "latency" );
+        gen.value( "count", latency.getTotalCount() );
+        gen.value( "mean", latency.getMean() / 1000 );
+        gen.value( "p50", latency.getValueAtPercentile( 50 ) / 1000.0 );
+        gen.value( "p90", latency.getValueAtPercentile( 90 ) / 1000.0 );
+        gen.value( "p99", latency.getValueAtPercentile( 99 ) / 1000.0 );
+        gen.value( "p999", latency.getValueAtPercentile( 99.9 ) / 1000.0 );
+        gen.value( "max", latency.getMaxValue() / 1000.0 );
+        gen.end();
+    }
+}
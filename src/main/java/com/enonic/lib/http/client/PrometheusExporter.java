@@ -0,0 +1,156 @@
+package com.enonic.lib.http.client;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToLongFunction;
+
+import org.HdrHistogram.Histogram;
+
+/**
+ * Writes the client cache counters, the per-destination metrics and the response decoding statistics
+ * in the Prometheus text exposition format, version 0.0.4.
+ */
+final class PrometheusExporter
+{
+    static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private static final String PREFIX = "lib_httpclient_";
+
+    /**
+     * Upper bounds of the latency histogram buckets, in seconds.
+     */
+    private static final double[] LATENCY_BUCKETS = {0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30};
+
+    private static final String[] STATUS_CLASSES = {"1xx", "2xx", "3xx", "4xx", "5xx"};
+
+    private final StringBuilder out = new StringBuilder();
+
+    private PrometheusExporter()
+    {
+    }
+
+    static String export()
+    {
+        final PrometheusExporter exporter = new PrometheusExporter();
+        exporter.writeCache();
+        exporter.writeDestinations( ClientMetrics.destinations() );
+        exporter.writeDecoding( ContentDecoders.stats() );
+        return exporter.out.toString();
+    }
+
+    private void writeCache()
+    {
+        header( "cache_clients", "gauge", "HTTP clients in the cache." );
+        sample( "cache_clients", "", HttpClientFactory.cacheSize() );
+        header( "cache_creations_total", "counter", "HTTP clients created." );
+        sample( "cache_creations_total", "", HttpClientFactory.creations() );
+        header( "cache_evictions_total", "counter", "HTTP clients replaced after being idle, evicted or flushed." );
+        sample( "cache_evictions_total", "", HttpClientFactory.evictions() );
+    }
+
+    private void writeDestinations( final List<ClientMetrics.Destination> destinations )
+    {
+        counter( destinations, "requests_total", "Exchanges started.", ClientMetrics.Destination::getRequests );
+        header( "in_flight", "gauge", "Exchanges waiting for a response." );
+        for ( ClientMetrics.Destination destination : destinations )
+        {
+            sample( "in_flight", labels( destination ), destination.getInFlight() );
+        }
+
+        header( "responses_total", "counter", "Responses by status class." );
+        for ( ClientMetrics.Destination destination : destinations )
+        {
+            final long[] counts = {destination.getResponses1xx(), destination.getResponses2xx(), destination.getResponses3xx(),
+                destination.getResponses4xx(), destination.getResponses5xx()};
+            for ( int i = 0; i < counts.length; i++ )
+            {
+                sample( "responses_total", labels( destination ) + ",status_class=\"" + STATUS_CLASSES[i] + "\"", counts[i] );
+            }
+        }
+
+        counter( destinations, "errors_total", "Exchanges failed with an error other than a timeout.", ClientMetrics.Destination::getErrors );
+        counter( destinations, "timeouts_total", "Exchanges failed with a timeout.", ClientMetrics.Destination::getTimeouts );
+        counter( destinations, "spills_total", "Response bodies spilled to a temporary file.", ClientMetrics.Destination::getSpills );
+        counter( destinations, "spilled_bytes_total", "Response body bytes written to temporary files.",
+                 ClientMetrics.Destination::getSpilledBytes );
+        counter( destinations, "received_bytes_total", "Response body bytes received, before decoding.",
+                 ClientMetrics.Destination::getBytesIn );
+        counter( destinations, "sent_bytes_total", "Request body bytes sent.", ClientMetrics.Destination::getBytesOut );
+
+        header( "latency_seconds", "histogram", "Time until the response was received." );
+        for ( ClientMetrics.Destination destination : destinations )
+        {
+            writeLatency( labels( destination ), destination.latencySnapshot() );
+        }
+    }
+
+    private void writeLatency( final String labels, final Histogram latency )
+    {
+        // the histogram records microseconds
+        for ( double bucket : LATENCY_BUCKETS )
+        {
+            final long count = latency.getCountBetweenValues( 0, (long) ( bucket * 1_000_000 ) );
+            sample( "latency_seconds_bucket", labels + ",le=\"" + format( bucket ) + "\"", count );
+        }
+        final long count = latency.getTotalCount();
+        sample( "latency_seconds_bucket", labels + ",le=\"+Inf\"", count );
+        sample( "latency_seconds_sum", labels, format( latency.getMean() * count / 1_000_000 ) );
+        sample( "latency_seconds_count", labels, count );
+    }
+
+    private void writeDecoding( final Map<String, ContentDecoders.Stats> decoding )
+    {
+        header( "decoded_responses_total", "counter", "Responses decoded, by content coding." );
+        decoding.forEach( ( coding, stats ) -> sample( "decoded_responses_total", coding( coding ), stats.getResponses() ) );
+        header( "decoding_encoded_bytes_total", "counter", "Encoded bytes of decoded responses, by content coding." );
+        decoding.forEach( ( coding, stats ) -> sample( "decoding_encoded_bytes_total", coding( coding ), stats.getEncodedBytes() ) );
+        header( "decoding_decoded_bytes_total", "counter", "Decoded bytes of decoded responses, by content coding." );
+        decoding.forEach( ( coding, stats ) -> sample( "decoding_decoded_bytes_total", coding( coding ), stats.getDecodedBytes() ) );
+    }
+
+    private void counter( final List<ClientMetrics.Destination> destinations, final String name, final String help,
+                          final ToLongFunction<ClientMetrics.Destination> value )
+    {
+        header( name, "counter", help );
+        for ( ClientMetrics.Destination destination : destinations )
+        {
+            sample( name, labels( destination ), value.applyAsLong( destination ) );
+        }
+    }
+
+    private void header( final String name, final String type, final String help )
+    {
+        out.append( "# HELP " ).append( PREFIX ).append( name ).append( ' ' ).append( help ).append( '\n' );
+        out.append( "# TYPE " ).append( PREFIX ).append( name ).append( ' ' ).append( type ).append( '\n' );
+    }
+
+    private void sample( final String name, final String labels, final Object value )
+    {
+        out.append( PREFIX ).append( name );
+        if ( !labels.isEmpty() )
+        {
+            out.append( '{' ).append( labels ).append( '}' );
+        }
+        out.append( ' ' ).append( value ).append( '\n' );
+    }
+
+    private static String labels( final ClientMetrics.Destination destination )
+    {
+        return "destination=\"" + escape( destination.getDestination() ) + "\"";
+    }
+
+    private static String coding( final String coding )
+    {
+        return "coding=\"" + escape( coding ) + "\"";
+    }
+
+    static String escape( final String value )
+    {
+        return value.replace( "\\", "\\\\" ).replace( "\"", "\\\"" ).replace( "\n", "\\n" );
+    }
+
+    private static String format( final double value )
+    {
+        return value == Math.rint( value ) ? Long.toString( (long) value ) : Double.toString( value );
+    }
+}
@@ -0,0 +1,59 @@
+package com.enonic.lib.http.client;
+
+import java.net.http.HttpHeaders;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+import com.google.common.io.ByteSource;
+
+import com.enonic.xp.script.serializer.MapGenerator;
+import com.enonic.xp.script.serializer.MapSerializable;
+
+/**
+ * Maps an upstream response to an XP portal response object. The body is the upstream stream itself, it is not buffered.
+ */
+public final class ProxyResponseMapper
+    implements MapSerializable
+{
+    private final int status;
+
+    private final HttpHeaders headers;
+
+    private final ByteSource bodySource;
+
+    ProxyResponseMapper( final HttpResponse<Supplier<ByteSource>> response )
+    {
+        this.status = response.statusCode();
+        this.headers = ContentDecoders.decodedHeaders( response.headers() );
+        this.bodySource = response.body().get();
+    }
+
+    @Override
+    public void serialize( final MapGenerator gen )
+    {
+        gen.value( "status", status );
+        gen.value( "contentType", Utils.getContentType( headers ) );
+        serializeHeaders( "headers", gen );
+        gen.value( "body", bodySource );
+    }
+
+    private void serializeHeaders( final String name, final MapGenerator gen )
+    {
+        final Set<String> excluded = Utils.hopByHopHeaders( headers );
+        gen.map( name );
+        for ( Map.Entry<String, List<String>> e : this.headers.map().entrySet() )
+        {
+            final String key = e.getKey();
+            if ( key.startsWith( ":" ) || "content-type".equalsIgnoreCase( key ) || excluded.contains( key.toLowerCase( Locale.ROOT ) ) )
+            {
+                continue;
+            }
+            gen.value( key, e.getValue().size() == 1 ? e.getValue().get( 0 ) : e.getValue() );
+        }
+        gen.end();
+    }
+}
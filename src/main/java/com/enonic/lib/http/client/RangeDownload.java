@@ -0,0 +1,420 @@
+package com.enonic.lib.http.client;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Downloads a resource as byte ranges fetched in parallel, each written at its offset into a preallocated file.
+ * A range interrupted by an I/O error is resumed from the last written byte with {@code Range} and {@code If-Range},
+ * so a dropped connection doesn't restart the transfer from zero.
+ */
+final class RangeDownload
+{
+    interface RangeRequester
+    {
+        /**
+         * Sends the range request, returning the response with the undecoded body stream.
+         */
+        HttpResponse<InputStream> send( HttpRequest request )
+            throws IOException, InterruptedException;
+    }
+
+    static final long MIN_SEGMENT_SIZE = Long.getLong( "com.enonic.lib.http.client.download.minSegmentSize", 1024 * 1024 );
+
+    /**
+     * Upper limit of the segments of one download, whatever the script asks for. Each segment holds a connection and a thread.
+     */
+    static final int MAX_SEGMENTS = Integer.getInteger( "com.enonic.lib.http.client.download.maxSegments", 16 );
+
+    /**
+     * Threads fetching ranges, shared by all downloads. Segments beyond it wait in the queue.
+     */
+    static final int MAX_THREADS = Integer.getInteger( "com.enonic.lib.http.client.download.maxThreads", 64 );
+
+    static final int MAX_RESUMES = 3;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final Pattern CONTENT_RANGE = Pattern.compile( "bytes\\s+(\\d+)-(\\d+)/(\\d+|\\*)" );
+
+    private static final ExecutorService EXECUTOR = newExecutor();
+
+    static
+    {
+        BundleStop.register( EXECUTOR::shutdownNow );
+    }
+
+    private final HttpRequest request;
+
+    private final RangeRequester requester;
+
+    private final long size;
+
+    private final String validator;
+
+    RangeDownload( final HttpRequest request, final RangeRequester requester, final HttpHeaders probeHeaders )
+    {
+        this.request = request;
+        this.requester = requester;
+        this.size = Utils.getContentLength( probeHeaders );
+        this.validator = validator( probeHeaders );
+    }
+
+    private static ExecutorService newExecutor()
+    {
+        final ThreadPoolExecutor executor =
+            new ThreadPoolExecutor( MAX_THREADS, MAX_THREADS, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), new RangeThreadFactory() );
+        // idle threads are released, the pool only grows to MAX_THREADS under load
+        executor.allowCoreThreadTimeOut( true );
+        return executor;
+    }
+
+    /**
+     * HEAD request that asks for the identity coding, ranges apply to the encoded representation.
+     */
+    static HttpRequest probeRequest( final HttpRequest request )
+    {
+        return HttpRequest.newBuilder( request, ( name, value ) -> true )
+            .method( "HEAD", HttpRequest.BodyPublishers.noBody() )
+            .setHeader( "Accept-Encoding", "identity" )
+            .build();
+    }
+
+    /**
+     * @return true if the probe response announces byte ranges and a non-empty length
+     */
+    static boolean supportsRanges( final int status, final HttpHeaders headers )
+    {
+        return status == 200 && Utils.getContentLength( headers ) > 0 &&
+            headers.firstValue( "accept-ranges" ).map( v -> v.trim().toLowerCase( Locale.ROOT ).equals( "bytes" ) ).orElse( false ) &&
+            headers.firstValue( "content-encoding" ).map( v -> v.trim().equalsIgnoreCase( "identity" ) ).orElse( true );
+    }
+
+    /**
+     * If-Range requires a strong validator: a strong ETag, otherwise Last-Modified.
+     */
+    static String validator( final HttpHeaders headers )
+    {
+        return headers.firstValue( "etag" )
+            .filter( etag -> !etag.startsWith( "W/" ) )
+            .or( () -> headers.firstValue( "last-modified" ) )
+            .orElse( null );
+    }
+
+    /**
+     * Number of segments to use, at most {@link #MAX_SEGMENTS} and reduced so that no segment is smaller than {@link #MIN_SEGMENT_SIZE}.
+     */
+    static int segmentCount( final long size, final int requested )
+    {
+        final long bySize = Math.max( 1, size / MIN_SEGMENT_SIZE );
+        return (int) Math.max( 1, Math.min( Math.min( requested, MAX_SEGMENTS ), bySize ) );
+    }
+
+    long size()
+    {
+        return size;
+    }
+
+    /**
+     * Preallocates the file and fetches the segments in parallel. Fails with the first segment error, the other segments are cancelled
+     * and have stopped writing to the file when this returns.
+     */
+    void run( final Path file, final int segments )
+        throws IOException, InterruptedException
+    {
+        final int count = segmentCount( size, segments );
+        final long segmentSize = size / count;
+
+        try (FileChannel channel = FileChannel.open( file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                                     StandardOpenOption.TRUNCATE_EXISTING ))
+        {
+            if ( size > 0 )
+            {
+                // sets the length without writing the content, the file is sparse where supported
+                channel.write( ByteBuffer.allocate( 1 ), size - 1 );
+            }
+
+            final Workers workers = new Workers();
+            final List<Future<?>> futures = new ArrayList<>( count );
+            for ( int i = 0; i < count; i++ )
+            {
+                final long start = i * segmentSize;
+                final long end = i == count - 1 ? size - 1 : start + segmentSize - 1;
+                futures.add( EXECUTOR.submit( () -> {
+                    if ( workers.enter() )
+                    {
+                        try
+                        {
+                            fetch( channel, start, end );
+                        }
+                        finally
+                        {
+                            workers.exit();
+                        }
+                    }
+                    return null;
+                } ) );
+            }
+            awaitAll( futures, workers );
+        }
+    }
+
+    private static void awaitAll( final List<Future<?>> futures, final Workers workers )
+        throws IOException, InterruptedException
+    {
+        try
+        {
+            for ( Future<?> future : futures )
+            {
+                future.get();
+            }
+        }
+        catch ( InterruptedException e )
+        {
+            cancel( futures, workers );
+            throw e;
+        }
+        catch ( ExecutionException e )
+        {
+            cancel( futures, workers );
+            final Throwable cause = e.getCause();
+            if ( cause instanceof IOException )
+            {
+                throw (IOException) cause;
+            }
+            if ( cause instanceof RuntimeException )
+            {
+                throw (RuntimeException) cause;
+            }
+            if ( cause instanceof Error )
+            {
+                throw (Error) cause;
+            }
+            throw new IOException( cause.getMessage(), cause );
+        }
+    }
+
+    private static void cancel( final List<Future<?>> futures, final Workers workers )
+    {
+        // queued segments never start, running ones are interrupted and waited for
+        futures.forEach( future -> future.cancel( false ) );
+        workers.abort();
+    }
+
+    private void fetch( final FileChannel channel, final long start, final long end )
+        throws IOException, InterruptedException
+    {
+        long position = start;
+        int resumes = 0;
+        while ( position <= end )
+        {
+            final long resumedAt = position;
+            try
+            {
+                position = transfer( channel, position, end );
+            }
+            catch ( InterruptedIOException | RangeException e )
+            {
+                throw e;
+            }
+            catch ( IOException e )
+            {
+                position = e instanceof PartialTransferException ? ( (PartialTransferException) e ).position : resumedAt;
+                if ( Thread.currentThread().isInterrupted() )
+                {
+                    throw new InterruptedException();
+                }
+                // an attempt that made progress doesn't count against the limit
+                if ( position == resumedAt && ++resumes > MAX_RESUMES )
+                {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private long transfer( final FileChannel channel, final long start, final long end )
+        throws IOException, InterruptedException
+    {
+        final HttpResponse<InputStream> response = requester.send( rangeRequest( start, end ) );
+        try (InputStream body = response.body())
+        {
+            checkRange( response, start );
+
+            final byte[] buf = new byte[BUFFER_SIZE];
+            long position = start;
+            try
+            {
+                int n;
+                while ( position <= end && ( n = body.read( buf, 0, (int) Math.min( buf.length, end - position + 1 ) ) ) != -1 )
+                {
+                    final ByteBuffer buffer = ByteBuffer.wrap( buf, 0, n );
+                    while ( buffer.hasRemaining() )
+                    {
+                        position += channel.write( buffer, position );
+                    }
+                }
+            }
+            catch ( InterruptedIOException e )
+            {
+                throw e;
+            }
+            catch ( IOException e )
+            {
+                throw new PartialTransferException( e, position );
+            }
+            if ( position <= end )
+            {
+                throw new PartialTransferException( new IOException( "Range response ended at byte " + position + " of " + end ), position );
+            }
+            return position;
+        }
+    }
+
+    private HttpRequest rangeRequest( final long start, final long end )
+    {
+        final HttpRequest.Builder builder = HttpRequest.newBuilder( request, ( name, value ) -> true )
+            .GET()
+            .setHeader( "Accept-Encoding", "identity" )
+            .setHeader( "Range", "bytes=" + start + "-" + end );
+        if ( validator != null )
+        {
+            builder.setHeader( "If-Range", validator );
+        }
+        return builder.build();
+    }
+
+    private void checkRange( final HttpResponse<?> response, final long start )
+        throws RangeException
+    {
+        if ( response.statusCode() == 200 )
+        {
+            throw new RangeException( validator != null ? "Resource changed during download" : "Server ignored the Range request" );
+        }
+        if ( response.statusCode() != 206 )
+        {
+            throw new RangeException( "Unexpected status " + response.statusCode() + " for range request" );
+        }
+        final Matcher matcher = CONTENT_RANGE.matcher( response.headers().firstValue( "content-range" ).orElse( "" ) );
+        if ( !matcher.matches() || Long.parseLong( matcher.group( 1 ) ) != start ||
+            ( !"*".equals( matcher.group( 3 ) ) && Long.parseLong( matcher.group( 3 ) ) != size ) )
+        {
+            throw new RangeException( "Invalid Content-Range for range starting at byte " + start );
+        }
+    }
+
+    /**
+     * Failure that resuming can't fix, e.g. the resource changed.
+     */
+    private static final class RangeException
+        extends IOException
+    {
+        RangeException( final String message )
+        {
+            super( message );
+        }
+    }
+
+    private static final class PartialTransferException
+        extends IOException
+    {
+        final long position;
+
+        PartialTransferException( final IOException cause, final long position )
+        {
+            super( cause.getMessage(), cause );
+            this.position = position;
+        }
+    }
+
+    /**
+     * Threads fetching segments of one download, so a failed download can stop them and wait until none of them writes to the file.
+     */
+    private static final class Workers
+    {
+        private final Set<Thread> running = new HashSet<>();
+
+        private boolean aborted;
+
+        /**
+         * @return false if the download was aborted before the segment started
+         */
+        synchronized boolean enter()
+        {
+            if ( aborted )
+            {
+                return false;
+            }
+            running.add( Thread.currentThread() );
+            return true;
+        }
+
+        synchronized void exit()
+        {
+            running.remove( Thread.currentThread() );
+            notifyAll();
+        }
+
+        /**
+         * Interrupts the running segments and waits until they have returned.
+         */
+        synchronized void abort()
+        {
+            aborted = true;
+            running.forEach( Thread::interrupt );
+            boolean interrupted = false;
+            while ( !running.isEmpty() )
+            {
+                try
+                {
+                    wait();
+                }
+                catch ( InterruptedException e )
+                {
+                    interrupted = true;
+                }
+            }
+            if ( interrupted )
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static final class RangeThreadFactory
+        implements ThreadFactory
+    {
+        private final AtomicInteger nextId = new AtomicInteger();
+
+        @Override
+        public Thread newThread( final Runnable r )
+        {
+            final Thread t = new Thread( null, r, "lib-httpclient-Range-" + nextId.getAndIncrement(), 0, false );
+            t.setDaemon( true );
+            return t;
+        }
+    }
+}
@@ -2,8 +2,13 @@ package com.enonic.lib.http.client;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.UncheckedIOException;
 import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -24,8 +29,19 @@ public final class RefPathByteSource
 {
     private static final Cleaner CLEANER = Cleaner.create();
 
+    private final Path file;
+
+    private final long offset;
+
+    private final long length;
+
     private final ByteSource delegate;
 
+    /**
+     * Slices share the file with the source they were created from and keep it reachable, so the file is not deleted while a slice is in use.
+     */
+    private final RefPathByteSource owner;
+
     private static final Set<Path> FILES_TO_DELETE_ON_EXIT = Collections.newSetFromMap( new ConcurrentHashMap<>() );
 
     static
@@ -73,12 +89,34 @@ public final class RefPathByteSource
 
     public RefPathByteSource( final Path file )
     {
-
+        this.file = file;
+        this.offset = 0;
+        this.length = Long.MAX_VALUE;
         this.delegate = MoreFiles.asByteSource( file );
+        this.owner = null;
         FILES_TO_DELETE_ON_EXIT.add( file );
         CLEANER.register( this, new CleanupAction( file ) );
     }
 
+    private RefPathByteSource( final RefPathByteSource parent, final long offset, final long length )
+    {
+        this.file = parent.file;
+        this.offset = parent.offset + offset;
+        this.length = Math.min( length, parent.length - offset );
+        this.delegate = parent.delegate.slice( offset, length );
+        this.owner = parent.owner != null ? parent.owner : parent;
+    }
+
+    Path getPath()
+    {
+        return file;
+    }
+
+    boolean isWholeFile()
+    {
+        return offset == 0 && length == Long.MAX_VALUE;
+    }
+
     @Override
     public InputStream openStream()
         throws IOException
@@ -111,4 +149,65 @@ public final class RefPathByteSource
     {
         return delegate.asCharSource( charset );
     }
+
+    /**
+     * Returns a view of the given range of the file. No bytes are copied, the slice reads the same file.
+     */
+    @Override
+    public RefPathByteSource slice( final long offset, final long length )
+    {
+        if ( offset < 0 || length < 0 )
+        {
+            throw new IllegalArgumentException( "offset and length must be non-negative" );
+        }
+        return new RefPathByteSource( this, Math.min( offset, this.length ), length );
+    }
+
+    /**
+     * Maps the file (or the slice of it) into memory.
+     *
+     * @return read-only memory-mapped buffer
+     * @throws IOException if the file can't be mapped or is larger than 2GB
+     */
+    public ByteBuffer asByteBuffer()
+        throws IOException
+    {
+        try (FileChannel channel = FileChannel.open( file ))
+        {
+            final long start = Math.min( offset, channel.size() );
+            final long count = Math.min( length, channel.size() - start );
+            if ( count > Integer.MAX_VALUE )
+            {
+                throw new IOException( "File is too large to be mapped: " + count + " bytes" );
+            }
+            return channel.map( FileChannel.MapMode.READ_ONLY, start, count );
+        }
+    }
+
+    /**
+     * Copies the file (or the slice of it) with {@link FileChannel#transferTo}. The copy bypasses the heap only when the output is
+     * a plain {@link java.io.FileOutputStream}, whose channel is the target. Other outputs are wrapped by
+     * {@link Channels#newChannel(OutputStream)}, which still copies through a heap buffer.
+     */
+    @Override
+    public long copyTo( final OutputStream output )
+        throws IOException
+    {
+        try (FileChannel channel = FileChannel.open( file ))
+        {
+            final WritableByteChannel target = Channels.newChannel( output );
+            final long end = offset + Math.min( length, Math.max( 0, channel.size() - offset ) );
+            long position = offset;
+            while ( position < end )
+            {
+                final long transferred = channel.transferTo( position, end - position, target );
+                if ( transferred <= 0 )
+                {
+                    break;
+                }
+                position += transferred;
+            }
+            return position - offset;
+        }
+    }
 }
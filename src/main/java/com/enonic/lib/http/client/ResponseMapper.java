@@ -1,11 +1,15 @@
 package com.enonic.lib.http.client;
 
 import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
 import java.net.HttpCookie;
 import java.net.http.HttpHeaders;
 import java.net.http.HttpResponse;
 import java.nio.charset.Charset;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 import java.util.function.Supplier;
 
 import com.google.common.io.ByteSource;
@@ -29,18 +33,79 @@ public final class ResponseMapper
 
     private final String bodyString;
 
+    private final Charset jsonCharset;
+
+    private ExchangeTimings timings;
+
+    private Consumer<IOException> onBodyError;
+
     public ResponseMapper( final HttpResponse<Supplier<ByteSource>> response )
         throws IOException
+    {
+        this( response, BodyMode.AUTO );
+    }
+
+    ResponseMapper( final HttpResponse<Supplier<ByteSource>> response, final BodyMode bodyMode )
+        throws IOException
+    {
+        this( response, response.body().get(), bodyMode );
+    }
+
+    ResponseMapper( final HttpResponse<?> response, final ByteSource bodySource, final BodyMode bodyMode )
+        throws IOException
     {
         this.status = response.statusCode();
-        this.headers = response.headers();
-        this.bodySource = response.body().get();
+        this.headers = ContentDecoders.decodedHeaders( response.headers() );
+        this.bodySource = bodySource;
+
+        this.jsonCharset = bodyMode == BodyMode.JSON && Utils.isJson( this.headers ) ? Utils.getCharset( this.headers ) : null;
 
-        final Charset charset = Utils.guessTextCharset( this.headers );
+        final Charset charset = jsonCharset == null ? textCharset( bodyMode ) : null;
         this.bodyString = charset != null ? this.bodySource.asCharSource( charset ).read() : null;
 
-        this.cookiesTime = System.currentTimeMillis();
         this.cookies = Utils.getCookies( response );
+        this.cookiesTime = this.cookies.isEmpty() ? 0 : System.currentTimeMillis();
+    }
+
+    void setTimings( final ExchangeTimings timings )
+    {
+        this.timings = timings;
+    }
+
+    /**
+     * A JSON body is parsed while the response is serialized for the script, after the exchange has completed.
+     * The handler reports a malformed body on the exchange before serialization fails.
+     */
+    void onBodyError( final Consumer<IOException> onBodyError )
+    {
+        this.onBodyError = onBodyError;
+    }
+
+    int status()
+    {
+        return status;
+    }
+
+    /**
+     * @return size of the body, or -1 if not known without reading it
+     */
+    long bodySize()
+    {
+        return bodySource == null ? -1 : bodySource.sizeIfKnown().or( -1L );
+    }
+
+    private Charset textCharset( final BodyMode bodyMode )
+    {
+        switch ( bodyMode )
+        {
+            case AUTO:
+            case JSON:
+                return Utils.guessTextCharset( this.headers );
+            case STRING:
+                return Utils.getCharset( this.headers );
+            default:
+                return null;
+        }
     }
 
     @Override
@@ -49,22 +114,60 @@ public final class ResponseMapper
         gen.value( "status", status );
         gen.value( "message", Utils.httpCodeToMessage( status ) );
 
-        gen.value( "body", bodyString );
+        if ( jsonCharset != null )
+        {
+            serializeJsonBody( "body", gen );
+        }
+        else
+        {
+            gen.value( "body", bodyString );
+        }
         gen.value( "bodyStream", bodySource );
         gen.value( "contentType", Utils.getContentType( headers ) );
 
         serializeHeaders( "headers", gen );
         serializeCookies( "cookies", gen );
+
+        if ( timings != null )
+        {
+            timings.serialize( "timings", gen );
+        }
+    }
+
+    private void serializeJsonBody( final String name, final MapGenerator gen )
+    {
+        try
+        {
+            if ( bodySource.isEmpty() )
+            {
+                gen.value( name, null );
+                return;
+            }
+            try (Reader reader = bodySource.asCharSource( jsonCharset ).openStream())
+            {
+                JsonBodyParser.parse( reader, gen, name );
+            }
+        }
+        catch ( IOException e )
+        {
+            if ( onBodyError != null )
+            {
+                onBodyError.accept( e );
+            }
+            throw new UncheckedIOException( e.getMessage(), e );
+        }
     }
 
     private void serializeHeaders( final String name, final MapGenerator gen )
     {
         gen.map( name );
-        this.headers.map()
-            .entrySet()
-            .stream()
-            .filter( e -> !":status".equals( e.getKey() ) )
-            .forEach( e -> gen.value( e.getKey(), e.getValue().size() == 1 ? e.getValue().get( 0 ) : e.getValue() ) );
+        for ( Map.Entry<String, List<String>> e : this.headers.map().entrySet() )
+        {
+            if ( !":status".equals( e.getKey() ) )
+            {
+                gen.value( e.getKey(), e.getValue().size() == 1 ? e.getValue().get( 0 ) : e.getValue() );
+            }
+        }
         gen.end();
     }
 
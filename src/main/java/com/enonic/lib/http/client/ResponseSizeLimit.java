@@ -0,0 +1,234 @@
+package com.enonic.lib.http.client;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+
+/**
+ * Enforces the maximum size of a response body. Responses announcing a larger Content-Length are rejected before the body is read,
+ * otherwise the bytes are counted as they arrive and the exchange is cancelled as soon as the limit is crossed.
+ */
+final class ResponseSizeLimit
+{
+    private ResponseSizeLimit()
+    {
+    }
+
+    static IOException exceeded( final long maxBytes )
+    {
+        return new IOException( "Response body exceeds maxResponseBytes limit of " + maxBytes + " bytes" );
+    }
+
+    /**
+     * Returns a handler that rejects responses with a Content-Length above the limit, without reading the body.
+     */
+    static <T> HttpResponse.BodyHandler<T> checkContentLength( final HttpResponse.BodyHandler<T> handler, final long maxBytes )
+    {
+        return responseInfo -> {
+            if ( Utils.getContentLength( responseInfo.headers() ) > maxBytes )
+            {
+                return new RejectingSubscriber<>( maxBytes );
+            }
+            return handler.apply( responseInfo );
+        };
+    }
+
+    /**
+     * Returns a subscriber that cancels the upstream and fails once more than maxBytes were received.
+     */
+    static <T> HttpResponse.BodySubscriber<T> limit( final HttpResponse.BodySubscriber<T> downstream, final long maxBytes )
+    {
+        return new LimitingSubscriber<>( downstream, maxBytes );
+    }
+
+    /**
+     * Returns a stream that closes the source, which cancels the upstream subscription, and fails once more than maxBytes were read.
+     * Used for body streams, so the script gets the limit error itself rather than an error wrapped by the JDK input stream.
+     */
+    static InputStream limit( final InputStream source, final long maxBytes )
+    {
+        return new LimitedInputStream( source, maxBytes );
+    }
+
+    private static final class RejectingSubscriber<T>
+        implements HttpResponse.BodySubscriber<T>
+    {
+        private final CompletableFuture<T> body = new CompletableFuture<>();
+
+        RejectingSubscriber( final long maxBytes )
+        {
+            body.completeExceptionally( exceeded( maxBytes ) );
+        }
+
+        @Override
+        public CompletionStage<T> getBody()
+        {
+            return body;
+        }
+
+        @Override
+        public void onSubscribe( final Flow.Subscription subscription )
+        {
+            subscription.cancel();
+        }
+
+        @Override
+        public void onNext( final List<ByteBuffer> item )
+        {
+        }
+
+        @Override
+        public void onError( final Throwable throwable )
+        {
+        }
+
+        @Override
+        public void onComplete()
+        {
+        }
+    }
+
+    private static final class LimitingSubscriber<T>
+        implements HttpResponse.BodySubscriber<T>
+    {
+        private final HttpResponse.BodySubscriber<T> downstream;
+
+        private final long maxBytes;
+
+        private Flow.Subscription subscription;
+
+        private long received;
+
+        private boolean done;
+
+        LimitingSubscriber( final HttpResponse.BodySubscriber<T> downstream, final long maxBytes )
+        {
+            this.downstream = downstream;
+            this.maxBytes = maxBytes;
+        }
+
+        @Override
+        public CompletionStage<T> getBody()
+        {
+            return downstream.getBody();
+        }
+
+        @Override
+        public void onSubscribe( final Flow.Subscription subscription )
+        {
+            this.subscription = subscription;
+            downstream.onSubscribe( subscription );
+        }
+
+        @Override
+        public void onNext( final List<ByteBuffer> item )
+        {
+            if ( done )
+            {
+                return;
+            }
+            for ( ByteBuffer buffer : item )
+            {
+                received += buffer.remaining();
+            }
+            if ( received > maxBytes )
+            {
+                done = true;
+                subscription.cancel();
+                downstream.onError( exceeded( maxBytes ) );
+                return;
+            }
+            downstream.onNext( item );
+        }
+
+        @Override
+        public void onError( final Throwable throwable )
+        {
+            if ( !done )
+            {
+                done = true;
+                downstream.onError( throwable );
+            }
+        }
+
+        @Override
+        public void onComplete()
+        {
+            if ( !done )
+            {
+                done = true;
+                downstream.onComplete();
+            }
+        }
+    }
+
+    private static final class LimitedInputStream
+        extends FilterInputStream
+    {
+        private final long maxBytes;
+
+        private long count;
+
+        LimitedInputStream( final InputStream in, final long maxBytes )
+        {
+            super( in );
+            this.maxBytes = maxBytes;
+        }
+
+        @Override
+        public int read()
+            throws IOException
+        {
+            final int b = in.read();
+            if ( b != -1 )
+            {
+                count( 1 );
+            }
+            return b;
+        }
+
+        @Override
+        public int read( final byte[] b, final int off, final int len )
+            throws IOException
+        {
+            final int n = in.read( b, off, len );
+            if ( n > 0 )
+            {
+                count( n );
+            }
+            return n;
+        }
+
+        @Override
+        public long skip( final long n )
+            throws IOException
+        {
+            final long skipped = in.skip( n );
+            count( skipped );
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported()
+        {
+            return false;
+        }
+
+        private void count( final long n )
+            throws IOException
+        {
+            count += n;
+            if ( count > maxBytes )
+            {
+                in.close();
+                throw exceeded( maxBytes );
+            }
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package com.enonic.lib.http.client;
+
+import java.net.URI;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Logs calls that took longer than a fixed threshold, or waited for the response longer than a multiple of the rolling p99 latency
+ * of their destination. At most maxPerMinute calls are logged per minute, the number of calls left out is added to the next entry.
+ * Failed calls are checked the same way, by the time until they failed. Calls below both thresholds cost a few comparisons.
+ */
+final class SlowCallLog
+{
+    private static final Logger LOG = LoggerFactory.getLogger( SlowCallLog.class );
+
+    static final SlowCallLog INSTANCE = new SlowCallLog( Long.getLong( "com.enonic.lib.http.client.slow.threshold", 10_000 ),
+                                                         Integer.getInteger( "com.enonic.lib.http.client.slow.p99Multiplier", 5 ),
+                                                         Integer.getInteger( "com.enonic.lib.http.client.slow.maxPerMinute", 10 ),
+                                                         LOG::warn );
+
+    private static final long MINUTE_NANOS = TimeUnit.MINUTES.toNanos( 1 );
+
+    private final long thresholdMillis;
+
+    private final int p99Multiplier;
+
+    private final int maxPerMinute;
+
+    private final Consumer<String> sink;
+
+    private final AtomicLong minuteStart = new AtomicLong( System.nanoTime() );
+
+    private final AtomicInteger logged = new AtomicInteger();
+
+    private final AtomicInteger suppressed = new AtomicInteger();
+
+    /**
+     * @param thresholdMillis calls taking longer are logged, 0 disables the fixed threshold
+     * @param p99Multiplier calls waiting for the response longer than this multiple of the rolling p99 are logged, 0 disables it
+     * @param maxPerMinute maximum number of calls logged per minute
+     */
+    SlowCallLog( final long thresholdMillis, final int p99Multiplier, final int maxPerMinute, final Consumer<String> sink )
+    {
+        this.thresholdMillis = thresholdMillis;
+        this.p99Multiplier = p99Multiplier;
+        this.maxPerMinute = maxPerMinute;
+        this.sink = sink;
+    }
+
+    /**
+     * @param size response body size, -1 if unknown
+     */
+    void check( final String method, final String url, final int status, final long size, final ClientMetrics.Destination destination,
+                final ExchangeTimings timings )
+    {
+        log( method, url, status, null, size, destination, timings, timings.millis( ExchangeTimings.Phase.MAPPED ),
+             timings.millis( ExchangeTimings.Phase.HEADERS ) );
+    }
+
+    /**
+     * Checks a call that failed, e.g. timed out or was refused, by the time until it failed. A failure before the response arrived
+     * is compared against the p99 by that time too.
+     *
+     * @param destination null if the call failed before its destination was known
+     */
+    void checkFailed( final String method, final String url, final Throwable error, final ClientMetrics.Destination destination,
+                      final ExchangeTimings timings )
+    {
+        final double elapsed = timings.elapsedMillis();
+        final double headers = timings.millis( ExchangeTimings.Phase.HEADERS );
+        log( method, url, -1, error, -1, destination, timings, elapsed, headers >= 0 ? headers : elapsed );
+    }
+
+    private void log( final String method, final String url, final int status, final Throwable error, final long size,
+                      final ClientMetrics.Destination destination, final ExchangeTimings timings, final double elapsed,
+                      final double wait )
+    {
+        final boolean overThreshold = thresholdMillis > 0 && elapsed >= thresholdMillis;
+
+        final double p99 = p99Multiplier > 0 && destination != null ? destination.rollingP99Millis() : 0;
+        final boolean outlier = p99 > 0 && wait >= p99 * p99Multiplier;
+
+        if ( !overThreshold && !outlier )
+        {
+            return;
+        }
+        if ( !acquire() )
+        {
+            suppressed.incrementAndGet();
+            return;
+        }
+
+        final StringBuilder entry = new StringBuilder( "Slow HTTP call" );
+        append( entry, "method", method );
+        append( entry, "url", redact( url ) );
+        if ( error == null )
+        {
+            append( entry, "status", status );
+        }
+        else
+        {
+            // the class only, messages may repeat the url unredacted
+            append( entry, "error", error.getClass().getName() );
+        }
+        append( entry, "elapsedMs", format( elapsed ) );
+        append( entry, "reason", overThreshold ? "threshold" : "p99" );
+        append( entry, "thresholdMs", thresholdMillis );
+        append( entry, "p99Ms", format( p99 ) );
+        append( entry, "size", size );
+        append( entry, "spilled", timings.millis( ExchangeTimings.Phase.SPILL_STARTED ) >= 0 );
+        for ( ExchangeTimings.Phase phase : ExchangeTimings.Phase.values() )
+        {
+            final double millis = timings.millis( phase );
+            if ( millis >= 0 )
+            {
+                append( entry, phase.key() + "Ms", format( millis ) );
+            }
+        }
+        final int left = suppressed.getAndSet( 0 );
+        if ( left > 0 )
+        {
+            append( entry, "suppressed", left );
+        }
+        sink.accept( entry.toString() );
+    }
+
+    private boolean acquire()
+    {
+        final long now = System.nanoTime();
+        final long start = minuteStart.get();
+        if ( now - start >= MINUTE_NANOS && minuteStart.compareAndSet( start, now ) )
+        {
+            logged.set( 0 );
+        }
+        return logged.incrementAndGet() <= maxPerMinute;
+    }
+
+    private static void append( final StringBuilder entry, final String key, final Object value )
+    {
+        entry.append( ' ' ).append( key ).append( '=' ).append( value );
+    }
+
+    private static String format( final double millis )
+    {
+        return String.format( Locale.ROOT, "%.1f", millis );
+    }
+
+    /**
+     * Removes user info and query parameter values, they may contain credentials or personal data.
+     */
+    static String redact( final String url )
+    {
+        final URI uri;
+        try
+        {
+            uri = URI.create( url );
+        }
+        catch ( IllegalArgumentException e )
+        {
+            return "<invalid>";
+        }
+
+        final StringBuilder redacted = new StringBuilder();
+        if ( uri.getScheme() != null )
+        {
+            redacted.append( uri.getScheme() ).append( "://" );
+        }
+        if ( uri.getHost() != null )
+        {
+            redacted.append( uri.getHost() );
+        }
+        if ( uri.getPort() != -1 )
+        {
+            redacted.append( ':' ).append( uri.getPort() );
+        }
+        if ( uri.getRawPath() != null )
+        {
+            redacted.append( uri.getRawPath() );
+        }
+        if ( uri.getRawQuery() != null )
+        {
+            redacted.append( '?' );
+            final String[] params = uri.getRawQuery().split( "&" );
+            for ( int i = 0; i < params.length; i++ )
+            {
+                final int eq = params[i].indexOf( '=' );
+                redacted.append( i > 0 ? "&" : "" ).append( eq >= 0 ? params[i].substring( 0, eq ) + "=***" : params[i] );
+            }
+        }
+        return redacted.toString();
+    }
+}
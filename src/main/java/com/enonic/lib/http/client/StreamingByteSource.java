@@ -0,0 +1,117 @@
+package com.enonic.lib.http.client;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.lang.ref.Cleaner;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.google.common.base.Optional;
+import com.google.common.io.ByteSource;
+
+/**
+ * One-shot ByteSource backed directly by the response body stream. The stream can be opened only once.
+ * If the stream is never opened, it gets closed (and the connection released) when the source is garbage collected.
+ * Once opened, closing the stream is up to the reader.
+ * The size is known when the response declared it, so a part of a multipart upload sourced from it keeps a known length.
+ */
+public final class StreamingByteSource
+    extends ByteSource
+{
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    private final PushbackInputStream stream;
+
+    private final AtomicBoolean opened = new AtomicBoolean();
+
+    private final long size;
+
+    private static class CloseAction
+        implements Runnable
+    {
+        final InputStream stream;
+
+        final AtomicBoolean opened;
+
+        CloseAction( final InputStream stream, final AtomicBoolean opened )
+        {
+            this.stream = stream;
+            this.opened = opened;
+        }
+
+        public void run()
+        {
+            if ( opened.get() )
+            {
+                return;
+            }
+            try
+            {
+                stream.close();
+            }
+            catch ( IOException ignore )
+            {
+            }
+        }
+    }
+
+    StreamingByteSource( final InputStream stream )
+    {
+        this( stream, -1 );
+    }
+
+    /**
+     * @param size number of bytes the stream will return, -1 if unknown
+     */
+    StreamingByteSource( final InputStream stream, final long size )
+    {
+        this.stream = new PushbackInputStream( stream, 1 );
+        this.size = size;
+        CLEANER.register( this, new CloseAction( stream, opened ) );
+    }
+
+    @Override
+    public InputStream openStream()
+        throws IOException
+    {
+        if ( !opened.compareAndSet( false, true ) )
+        {
+            throw new IOException( "Response body stream can only be read once" );
+        }
+        return stream;
+    }
+
+    @Override
+    public boolean isEmpty()
+        throws IOException
+    {
+        if ( opened.get() )
+        {
+            throw new IOException( "Response body stream can only be read once" );
+        }
+        final int b = stream.read();
+        if ( b == -1 )
+        {
+            return true;
+        }
+        stream.unread( b );
+        return false;
+    }
+
+    @Override
+    public Optional<Long> sizeIfKnown()
+    {
+        return size >= 0 ? Optional.of( size ) : Optional.absent();
+    }
+
+    @Override
+    public long size()
+        throws IOException
+    {
+        if ( size < 0 )
+        {
+            throw new IOException( "Size of a streamed response body is unknown" );
+        }
+        return size;
+    }
+}
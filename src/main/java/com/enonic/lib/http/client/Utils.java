@@ -1,9 +1,6 @@
 package com.enonic.lib.http.client;
 
-import java.io.IOException;
 import java.math.BigInteger;
-import java.net.CookieManager;
-import java.net.CookiePolicy;
 import java.net.HttpCookie;
 import java.net.URI;
 import java.net.URISyntaxException;
@@ -12,8 +9,12 @@ import java.net.http.HttpHeaders;
 import java.net.http.HttpResponse;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 import com.github.mizosoft.methanol.MediaType;
@@ -27,6 +28,13 @@ final class Utils
      */
     private static final long MAX_COOKIE_EXPIRES = 253402257599999L;
 
+    /**
+     * Hop-by-hop headers as defined in RFC 7230, section 6.1, plus the legacy ones proxies are expected to drop.
+     */
+    private static final Set<String> HOP_BY_HOP_HEADERS =
+        Set.of( "connection", "keep-alive", "proxy-authenticate", "proxy-authorization", "proxy-connection", "te", "trailer",
+                "transfer-encoding", "upgrade" );
+
     private Utils()
     {
     }
@@ -53,6 +61,48 @@ final class Utils
         return headers.firstValue( "content-type" ).orElse( null );
     }
 
+    /**
+     * @param headers response headers
+     * @return charset of the content type, UTF-8 if the content type is missing or has no charset
+     */
+    public static Charset getCharset( final HttpHeaders headers )
+    {
+        final String contentType = getContentType( headers );
+        if ( requireNonNullElse( contentType, "" ).isBlank() )
+        {
+            return StandardCharsets.UTF_8;
+        }
+        try
+        {
+            return MediaType.parse( contentType ).charsetOrDefault( StandardCharsets.UTF_8 );
+        }
+        catch ( IllegalArgumentException e )
+        {
+            return StandardCharsets.UTF_8;
+        }
+    }
+
+    /**
+     * @param headers response headers
+     * @return true if the content type is JSON (including +json suffixes) or missing
+     */
+    public static boolean isJson( final HttpHeaders headers )
+    {
+        final String contentType = getContentType( headers );
+        if ( requireNonNullElse( contentType, "" ).isBlank() )
+        {
+            return true;
+        }
+        try
+        {
+            return MediaType.parse( contentType ).subtype().contains( "json" );
+        }
+        catch ( IllegalArgumentException e )
+        {
+            return false;
+        }
+    }
+
     public static Charset guessTextCharset( final HttpHeaders headers )
     {
         final String contentType = getContentType( headers );
@@ -79,13 +129,130 @@ final class Utils
             : null;
     }
 
-    public static List<HttpCookie> getCookies( HttpResponse<?> response )
-        throws IOException
+    /**
+     * @param headers response headers
+     * @return lower-cased names of the headers that must not be forwarded by a proxy, including the ones listed in the Connection header
+     */
+    public static Set<String> hopByHopHeaders( final HttpHeaders headers )
     {
-        final CookieManager cookieHandler = new CookieManager( null, CookiePolicy.ACCEPT_ALL );
+        final List<String> connection = headers.allValues( "connection" );
+        if ( connection.isEmpty() )
+        {
+            return HOP_BY_HOP_HEADERS;
+        }
+        final Set<String> result = new HashSet<>( HOP_BY_HOP_HEADERS );
+        for ( String value : connection )
+        {
+            for ( String token : value.split( "," ) )
+            {
+                if ( !token.isBlank() )
+                {
+                    result.add( token.trim().toLowerCase( Locale.ROOT ) );
+                }
+            }
+        }
+        return result;
+    }
 
-        cookieHandler.put( response.request().uri(), response.headers().map() );
-        return cookieHandler.getCookieStore().getCookies();
+    /**
+     * Parses Set-Cookie and Set-Cookie2 response headers the same way {@link java.net.CookieManager} with
+     * {@link java.net.CookiePolicy#ACCEPT_ALL} would store them, without creating a cookie manager and store for every response.
+     *
+     * @param response HTTP response
+     * @return cookies set by the response, empty list if there are none
+     */
+    public static List<HttpCookie> getCookies( final HttpResponse<?> response )
+    {
+        final HttpHeaders headers = response.headers();
+        final List<String> setCookie = headers.allValues( "set-cookie" );
+        final List<String> setCookie2 = headers.allValues( "set-cookie2" );
+        if ( setCookie.isEmpty() && setCookie2.isEmpty() )
+        {
+            return List.of();
+        }
+
+        final URI uri = response.request().uri();
+        final List<HttpCookie> cookies = new ArrayList<>();
+        addCookies( uri, setCookie, cookies );
+        addCookies( uri, setCookie2, cookies );
+        cookies.removeIf( HttpCookie::hasExpired );
+        return cookies;
+    }
+
+    private static void addCookies( final URI uri, final List<String> headerValues, final List<HttpCookie> cookies )
+    {
+        for ( String headerValue : headerValues )
+        {
+            final List<HttpCookie> parsed;
+            try
+            {
+                parsed = HttpCookie.parse( headerValue );
+            }
+            catch ( IllegalArgumentException e )
+            {
+                continue;
+            }
+
+            for ( HttpCookie cookie : parsed )
+            {
+                if ( cookie.getPath() == null )
+                {
+                    cookie.setPath( defaultCookiePath( uri ) );
+                }
+                if ( cookie.getDomain() == null )
+                {
+                    final String host = uri.getHost();
+                    cookie.setDomain( host != null && !host.contains( "." ) ? host + ".local" : host );
+                }
+                if ( cookie.getPortlist() != null && !acceptPort( uri, cookie ) )
+                {
+                    continue;
+                }
+
+                // same cookie set again replaces the previous one, Max-Age=0 removes it
+                cookies.remove( cookie );
+                if ( cookie.getMaxAge() != 0 )
+                {
+                    cookies.add( cookie );
+                }
+            }
+        }
+    }
+
+    private static String defaultCookiePath( final URI uri )
+    {
+        final String path = requireNonNullElse( uri.getPath(), "" );
+        if ( path.endsWith( "/" ) )
+        {
+            return path;
+        }
+        final int i = path.lastIndexOf( '/' );
+        return i > 0 ? path.substring( 0, i + 1 ) : "/";
+    }
+
+    private static boolean acceptPort( final URI uri, final HttpCookie cookie )
+    {
+        final int port = uri.getPort() == -1 ? ( isSecure( uri ) ? 443 : 80 ) : uri.getPort();
+        final String ports = cookie.getPortlist();
+        if ( ports.isEmpty() )
+        {
+            cookie.setPortlist( Integer.toString( port ) );
+            return true;
+        }
+        for ( String p : ports.split( "," ) )
+        {
+            try
+            {
+                if ( Integer.parseInt( p.trim() ) == port )
+                {
+                    return true;
+                }
+            }
+            catch ( NumberFormatException ignore )
+            {
+            }
+        }
+        return false;
     }
 
     public static Long calculateCookieExpires( final long currentTime, final long maxAge )
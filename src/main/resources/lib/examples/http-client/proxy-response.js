@@ -0,0 +1,26 @@
+var httpClientLib = require('/lib/http-client');
+var assert = require('/lib/xp/testing');
+
+function getServerHost() {
+    return testInstance.getServerHost();
+}
+
+// BEGIN
+// Controller passing an upstream asset through to the client
+exports.get = function (req) {
+    return httpClientLib.proxyResponse({
+        url: 'http://' + getServerHost() + '/assets/logo.png',
+        method: 'GET'
+    });
+};
+// END
+
+var response = exports.get({});
+
+assert.assertEquals(200, response.status);
+assert.assertEquals('image/png', response.contentType);
+assert.assertEquals('4', response.headers['content-length']);
+assert.assertTrue(response.headers['connection'] === undefined, 'hop-by-hop header must be removed');
+assert.assertTrue(response.headers['x-upstream-hop'] === undefined, 'header listed in Connection must be removed');
+assert.assertEquals('kept', response.headers['x-upstream']);
+assert.assertEquals('logo', testInstance.readStream(response.body));
@@ -0,0 +1,30 @@
+var httpClientLib = require('/lib/http-client');
+var assert = require('/lib/xp/testing');
+
+function getServerHost() {
+    return testInstance.getServerHost();
+}
+
+// BEGIN
+// Consume Server-Sent Events until the 'done' event
+var messages = [];
+var response = httpClientLib.stream({
+    url: 'http://' + getServerHost() + '/events',
+    headers: {
+        'Accept': 'text/event-stream'
+    }
+}, {
+    onEvent: function (event) {
+        if (event.event === 'done') {
+            return false;
+        }
+        messages.push(event.data);
+    }
+});
+// END
+
+assert.assertEquals(200, response.status);
+assert.assertEquals('text/event-stream', response.contentType);
+assert.assertEquals(2, messages.length);
+assert.assertEquals('first', messages[0]);
+assert.assertEquals('second\nline', messages[1]);
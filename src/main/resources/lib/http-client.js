@@ -20,10 +20,52 @@ function checkRequired(params, name) {
  * @property {string} message HTTP status message returned.
  * @property {object} headers HTTP headers of the response.
  * @property {string} contentType Content type of the response.
- * @property {string} body Body of the response as string. Null if the response content-type is not of type text.
+ * @property {string} body Body of the response as string. Null if the response content-type is not of type text, unless `bodyMode` is 'string'.
  * @property {*} bodyStream Body of the response as a stream object.
+ * @property {object} [timings] Milliseconds from the start of the call to each phase of the exchange, if requested with `timings`.
  */
 
+function createBean(params) {
+
+    var bean = __.newBean('com.enonic.lib.http.client.HttpRequestHandler');
+
+    checkRequired(params, 'url');
+
+    bean.setUrl(__.nullOrValue(params.url));
+    bean.setParams(__.nullOrValue(params.params));
+    bean.setQueryParams(__.nullOrValue(params.queryParams));
+    bean.setMethod(__.nullOrValue(params.method));
+    bean.setHeaders(__.nullOrValue(params.headers));
+    bean.setDisableHttp2(params.disableHttp2 === true);
+    bean.setHttp2Cleartext(params.http2Cleartext === true);
+    bean.setConnectionTimeout(__.nullOrValue(params.connectionTimeout));
+    bean.setHeadersTimeout(__.nullOrValue(params.headersTimeout));
+    bean.setReadTimeout(__.nullOrValue(params.readTimeout));
+    bean.setTotalTimeout(__.nullOrValue(params.totalTimeout));
+    bean.setBody(__.nullOrValue(params.body));
+    bean.setContentType(__.nullOrValue(params.contentType));
+    bean.setMultipart(__.nullOrValue(params.multipart));
+    bean.setFollowRedirects(__.nullOrValue(params.followRedirects));
+    if (params.proxy) {
+        bean.setProxyHost(__.nullOrValue(params.proxy.host));
+        bean.setProxyPort(__.nullOrValue(params.proxy.port));
+        bean.setProxyUser(__.nullOrValue(params.proxy.user));
+        bean.setProxyPassword(__.nullOrValue(params.proxy.password));
+    }
+    if (params.auth) {
+        bean.setAuthUser(__.nullOrValue(params.auth.user));
+        bean.setAuthPassword(__.nullOrValue(params.auth.password));
+    }
+    bean.setCertificates(__.nullOrValue(params.certificates));
+
+    bean.setClientCertificate(__.nullOrValue(params.clientCertificate));
+    bean.setMaxResponseBytes(__.nullOrValue(params.maxResponseBytes));
+    bean.setCompressBody(__.nullOrValue(params.compressBody));
+    bean.setTimings(params.timings === true);
+
+    return bean;
+}
+
 /**
  * Sends an HTTP request and returns the response received from the remote server.
  * The request is sent synchronously, the execution blocks until the response is received.
@@ -40,9 +82,12 @@ function checkRequired(params, name) {
  * @param {object} [params.params] Body form parameters. Will be encoded according to `application/x-www-form-urlencoded`.
  * For "GET" and "HEAD" request methods params are added to query string, but only if `params.queryParams` is not provided.
  * @param {object} [params.headers] HTTP headers, an object where the keys are header names and the values the header values.
- * @param {boolean} [params.disableHttp2=false] Disable use of HTTP/2 protocol. For insecure HTTP connections HTTP/2 is always disabled.
+ * @param {boolean} [params.disableHttp2=false] Disable use of HTTP/2 protocol. For insecure HTTP connections HTTP/2 is disabled unless http2Cleartext is set.
+ * @param {boolean} [params.http2Cleartext=false] Use cleartext HTTP/2 (h2c) for insecure HTTP connections. The first request to a server upgrades the connection, later requests are multiplexed over it.
  * @param {number} [params.connectionTimeout=10000] The timeout on establishing the connection, in milliseconds.
+ * @param {number} [params.headersTimeout] The timeout on receiving the response headers after sending the request, in milliseconds. Defaults to connectionTimeout.
  * @param {number} [params.readTimeout=10000] The timeout on waiting to receive data, in milliseconds.
+ * @param {number} [params.totalTimeout] The deadline of the whole call, including connecting, receiving the headers and reading the body, in milliseconds. No deadline by default.
  * @param {string|*} [params.body] Body content to send with the request, usually for POST or PUT requests. It can be of type string or stream.
  * @param {string} [params.contentType] Content type of the request. Only applicable for requests with body or multipart.
  * @param {object[]} [params.multipart] Multipart form data to send with the request, an array of part objects. Each part object contains
@@ -59,6 +104,20 @@ function checkRequired(params, name) {
  * If true, redirects will be handled internally. Default is to handle redirects internally, but don't redirect from https to http.
  * @param {*} [params.certificates] Stream of PEM encoded certificates. Replaces the host platform's certificate authorities with custom set.
  * @param {*} [params.clientCertificate] Stream is interpreted as PEM encoded certificate: Private key (in PKCS #8 format) and the client certificate concatenated.
+ * @param {string} [params.bodyMode] How the response body is received. By default the body is fully read before the function returns,
+ * and `body` is set only for text content types. One of:
+ * 'none' - body is discarded, both `body` and `bodyStream` are null;
+ * 'bytes' - body is read, but not decoded, `body` is null;
+ * 'string' - body is read and always decoded to `body`, using UTF-8 if the response content type has no charset;
+ * 'json' - body is read and parsed as JSON into `body`, same result as `JSON.parse(response.body)` but without the intermediate string.
+ * Responses with a non-JSON content type are handled as in default mode;
+ * 'stream' - the function returns as soon as the response headers are received, `body` is null and `bodyStream` can be read only once.
+ * @param {string} [params.compressBody] Compress the request body with the given content coding, 'gzip', 'deflate' or 'zstd', and set the
+ * `Content-Encoding` header. Applies to string, stream, form and multipart bodies. Bodies smaller than 1 KiB are sent uncompressed.
+ * @param {number} [params.maxResponseBytes] Maximum size of the response body, in bytes. A response with a larger Content-Length fails
+ * before the body is read, otherwise the exchange is cancelled and an error is thrown as soon as the limit is crossed while reading.
+ * @param {boolean} [params.timings=false] Add `timings` to the response: milliseconds from the start of the call to each phase reached,
+ * 'requestBuilt', 'clientReady', 'sent', 'headers', 'firstByte', 'spillStarted', 'bodyRead' and 'mapped'.
  *
  * NOTE: is neither `params.certificates` nor `params.clientCertificate` are provided, default JVM TrustStore and KeyStore are used.
  *
@@ -66,35 +125,154 @@ function checkRequired(params, name) {
  */
 exports.request = function (params) {
 
-    var bean = __.newBean('com.enonic.lib.http.client.HttpRequestHandler');
+    var bean = createBean(params);
+    bean.setBodyMode(__.nullOrValue(params.bodyMode));
 
-    checkRequired(params, 'url');
+    return __.toNativeObject(bean.request());
+};
 
-    bean.setUrl(__.nullOrValue(params.url));
-    bean.setParams(__.nullOrValue(params.params));
-    bean.setQueryParams(__.nullOrValue(params.queryParams));
-    bean.setMethod(__.nullOrValue(params.method));
-    bean.setHeaders(__.nullOrValue(params.headers));
-    bean.setDisableHttp2(params.disableHttp2 === true);
-    bean.setConnectionTimeout(__.nullOrValue(params.connectionTimeout));
-    bean.setReadTimeout(__.nullOrValue(params.readTimeout));
-    bean.setBody(__.nullOrValue(params.body));
-    bean.setContentType(__.nullOrValue(params.contentType));
-    bean.setMultipart(__.nullOrValue(params.multipart));
-    bean.setFollowRedirects(__.nullOrValue(params.followRedirects));
-    if (params.proxy) {
-        bean.setProxyHost(__.nullOrValue(params.proxy.host));
-        bean.setProxyPort(__.nullOrValue(params.proxy.port));
-        bean.setProxyUser(__.nullOrValue(params.proxy.user));
-        bean.setProxyPassword(__.nullOrValue(params.proxy.password));
+/**
+ * Sends an HTTP request and returns the upstream response in the form of an XP response object, ready to be returned from a controller.
+ * The response body is streamed from the upstream connection to the client as it arrives, it is not buffered.
+ * Hop-by-hop headers (Connection, Keep-Alive, Transfer-Encoding, etc.) are removed.
+ *
+ * @example-ref examples/http-client/proxy-response.js
+ *
+ * @param {object} params JSON parameters. Same as for the `request` function, except `bodyMode`.
+ *
+ * @return {object} XP response object with `status`, `contentType`, `headers` and `body` properties.
+ */
+exports.proxyResponse = function (params) {
+
+    var bean = createBean(params);
+
+    return __.toNativeObject(bean.proxy());
+};
+
+function toCallback(fn) {
+    return fn ? __.toScriptValue(fn) : null;
+}
+
+/**
+ * Sends an HTTP request and consumes the response body incrementally as it arrives, for Server-Sent Events, newline-delimited JSON or
+ * any other line oriented stream. The callbacks are called on the calling thread, the function returns when the stream ends
+ * or a callback returns `false`, which closes the upstream connection.
+ *
+ * Responses of type `text/event-stream` are parsed into events with `id`, `event`, `data` and `retry` properties.
+ * Responses of type `application/x-ndjson`, `application/jsonl` or `application/stream+json` are parsed into events with the parsed JSON line in `data`.
+ * Lines longer than 1 MiB, and Server-Sent Events with more than 4 Mi characters of data, abort the stream with an error.
+ *
+ * @example-ref examples/http-client/stream.js
+ *
+ * @param {object} params JSON parameters. Same as for the `request` function, except `bodyMode`.
+ * @param {object} callbacks Callbacks to receive the body.
+ * @param {function} [callbacks.onEvent] Called with each parsed Server-Sent Event or JSON line.
+ * @param {function} [callbacks.onLine] Called with each line of text, without the line terminator.
+ * @param {function} [callbacks.onChunk] Called with each chunk of raw bytes, as a stream object.
+ *
+ * @return {Response} response HTTP response received, with null `body` and `bodyStream`.
+ */
+exports.stream = function (params, callbacks) {
+
+    var bean = createBean(params);
+    callbacks = callbacks || {};
+
+    return __.toNativeObject(bean.stream(toCallback(callbacks.onEvent), toCallback(callbacks.onLine), toCallback(callbacks.onChunk)));
+};
+
+/**
+ * Sends an HTTP request and streams the response body into a sink, computing its size and checksum on the way.
+ * The body passes through memory once, it is neither buffered nor read twice. Only successful (2xx) response bodies are written
+ * to the sink, bodies of other responses are discarded.
+ *
+ * @param {object} params JSON parameters. Same as for the `request` function, except `bodyMode`.
+ * @param {string} [params.checksum=sha256] Checksum algorithm, 'sha256' or 'md5', case-insensitive.
+ * @param {number} [params.segments] Number of byte ranges to fetch in parallel, at most 16. If set, the resource is probed with a HEAD request
+ * and, if it supports byte ranges, downloaded in segments written at their offsets into the file, or into a temporary file handed to the
+ * sink function. Interrupted ranges are resumed with 'Range' and 'If-Range'. Otherwise it is downloaded as a single stream.
+ * @param {string|function} sink File path to write the body to, or a function called with the body as a stream object that can be read
+ * only once, e.g. to create a node attachment. The function must read the whole stream.
+ *
+ * @return {Response} response HTTP response received, with null `body` and `bodyStream`. For successful responses `size` is the number
+ * of bytes written and the `sha256` (or `md5`) property holds the hex encoded checksum.
+ */
+exports.download = function (params, sink) {
+
+    var bean = createBean(params);
+    var checksum = __.nullOrValue(params.checksum);
+    var segments = __.nullOrValue(params.segments);
+
+    if (typeof sink === 'string') {
+        return __.toNativeObject(bean.download(sink, null, checksum, segments));
     }
-    if (params.auth) {
-        bean.setAuthUser(__.nullOrValue(params.auth.user));
-        bean.setAuthPassword(__.nullOrValue(params.auth.password));
+    if (typeof sink === 'function') {
+        return __.toNativeObject(bean.download(null, __.toScriptValue(sink), checksum, segments));
     }
-    bean.setCertificates(__.nullOrValue(params.certificates));
+    throw "Parameter 'sink' must be a file path or a function";
+};
 
-    bean.setClientCertificate(__.nullOrValue(params.clientCertificate));
+/**
+ * Returns a snapshot of the metrics aggregated per destination since the library was started.
+ * A destination is the scheme, host and port of the request, or the proxy it is sent through.
+ *
+ * @return {object} metrics `destinations` array with request and status class counts, errors, timeouts, spills to temporary files,
+ * bytes in and out and latency percentiles in milliseconds, and `decoding` statistics per content coding.
+ */
+exports.metrics = function () {
 
-    return __.toNativeObject(bean.request());
+    var bean = __.newBean('com.enonic.lib.http.client.MetricsHandler');
+    return __.toNativeObject(bean.metrics());
+};
+
+/**
+ * Returns the metrics in the Prometheus text exposition format, as a response that can be returned from a service or webapp controller:
+ * client cache size, creations and evictions, and per destination the exchanges in flight, response and error counts, spilled and
+ * transferred bytes and a latency histogram.
+ *
+ * @return {object} response with `contentType` and the exposition as `body`.
+ */
+exports.prometheusMetrics = function () {
+
+    var bean = __.newBean('com.enonic.lib.http.client.MetricsHandler');
+    return {
+        contentType: bean.prometheusContentType(),
+        body: bean.prometheus()
+    };
+};
+
+/**
+ * Lists the cached HTTP clients. A client is created for each combination of connection settings, and serves all destinations
+ * requested with these settings.
+ *
+ * @return {object[]} clients Array of cached clients, each with `id`, `identity` (settings, credentials are not included),
+ * `createdAt`, `ageMillis` and `destinations`, an array with `destination`, `lastAccess`, `idleMillis` and `inFlight` exchanges.
+ */
+exports.cachedClients = function () {
+
+    var bean = __.newBean('com.enonic.lib.http.client.ClientCacheHandler');
+    return __.toNativeObject(bean.clients()).clients;
+};
+
+/**
+ * Removes a client from the cache. Exchanges in progress complete, the next request with the same settings creates a new client.
+ *
+ * @param {string} id Id of the client, as returned by `cachedClients`.
+ *
+ * @return {boolean} true if the client was cached.
+ */
+exports.evictClient = function (id) {
+
+    var bean = __.newBean('com.enonic.lib.http.client.ClientCacheHandler');
+    return bean.evict(id);
+};
+
+/**
+ * Removes all clients from the cache.
+ *
+ * @return {number} number of clients removed.
+ */
+exports.flushClients = function () {
+
+    var bean = __.newBean('com.enonic.lib.http.client.ClientCacheHandler');
+    return bean.flush();
 };
@@ -0,0 +1,97 @@
+package com.enonic.lib.http.client;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.junit.jupiter.api.Test;
+
+import io.airlift.compress.zstd.ZstdInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class BodyCompressionTest
+{
+    @Test
+    public void testGzip()
+        throws Exception
+    {
+        final byte[] data = data();
+
+        try (InputStream is = new GZIPInputStream( BodyCompression.GZIP.compress( new ByteArrayInputStream( data ) ) ))
+        {
+            assertArrayEquals( data, is.readAllBytes() );
+        }
+    }
+
+    @Test
+    public void testGzipEmpty()
+        throws Exception
+    {
+        try (InputStream is = new GZIPInputStream( BodyCompression.GZIP.compress( new ByteArrayInputStream( new byte[0] ) ) ))
+        {
+            assertArrayEquals( new byte[0], is.readAllBytes() );
+        }
+    }
+
+    @Test
+    public void testDeflate()
+        throws Exception
+    {
+        final byte[] data = data();
+
+        try (InputStream is = new InflaterInputStream( BodyCompression.DEFLATE.compress( new ByteArrayInputStream( data ) ) ))
+        {
+            assertArrayEquals( data, is.readAllBytes() );
+        }
+    }
+
+    @Test
+    public void testZstd()
+        throws Exception
+    {
+        final byte[] data = data();
+
+        try (InputStream is = new ZstdInputStream( BodyCompression.ZSTD.compress( new ByteArrayInputStream( data ) ) ))
+        {
+            assertArrayEquals( data, is.readAllBytes() );
+        }
+    }
+
+    @Test
+    public void testZstdEmpty()
+        throws Exception
+    {
+        try (InputStream is = new ZstdInputStream( BodyCompression.ZSTD.compress( new ByteArrayInputStream( new byte[0] ) ) ))
+        {
+            assertArrayEquals( new byte[0], is.readAllBytes() );
+        }
+    }
+
+    @Test
+    public void testFrom()
+    {
+        assertNull( BodyCompression.from( null ) );
+        assertNull( BodyCompression.from( " " ) );
+        assertEquals( BodyCompression.GZIP, BodyCompression.from( "gzip" ) );
+        assertEquals( BodyCompression.DEFLATE, BodyCompression.from( "Deflate" ) );
+        assertEquals( BodyCompression.ZSTD, BodyCompression.from( "zstd" ) );
+        assertThrows( IllegalArgumentException.class, () -> BodyCompression.from( "br" ) );
+    }
+
+    private static byte[] data()
+    {
+        final byte[] data = new byte[200_000];
+        // compressible, but not trivially
+        for ( int i = 0; i < data.length; i++ )
+        {
+            data[i] = (byte) ( 'a' + ThreadLocalRandom.current().nextInt( 4 ) );
+        }
+        return data;
+    }
+}
@@ -0,0 +1,98 @@
+package com.enonic.lib.http.client;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.google.common.io.ByteSource;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ChunkedByteSourceTest
+{
+    private Path tempFile;
+
+    @BeforeEach
+    public void setUp()
+        throws Exception
+    {
+        tempFile = Files.createTempFile( "xphttp", ".tmp" );
+        Files.write( tempFile, new byte[]{6, 7, 8, 9} );
+    }
+
+    @AfterEach
+    public final void shutdown()
+        throws Exception
+    {
+        Files.deleteIfExists( tempFile );
+    }
+
+    private ChunkedByteSource source( final boolean withFile )
+    {
+        final List<ByteBuffer> chunks = new ArrayList<>();
+        chunks.add( ByteBuffer.wrap( new byte[]{0, 1, 2} ) );
+        chunks.add( ByteBuffer.wrap( new byte[]{3, 4, 5} ) );
+        return new ChunkedByteSource( chunks, withFile ? new RefPathByteSource( tempFile ) : null );
+    }
+
+    @Test
+    public void testRead()
+        throws Exception
+    {
+        assertArrayEquals( new byte[]{0, 1, 2, 3, 4, 5}, source( false ).read() );
+        assertArrayEquals( new byte[]{0, 1, 2, 3, 4, 5, 6, 7, 8, 9}, source( true ).read() );
+        assertArrayEquals( new byte[]{0, 1, 2, 3, 4, 5, 6, 7, 8, 9}, source( true ).openStream().readAllBytes() );
+        assertEquals( 10L, source( true ).sizeIfKnown().get().longValue() );
+    }
+
+    @Test
+    public void testSlice()
+        throws Exception
+    {
+        final ChunkedByteSource source = source( true );
+
+        assertArrayEquals( new byte[]{1, 2, 3}, source.slice( 1, 3 ).read() );
+        assertArrayEquals( new byte[]{4, 5, 6, 7}, source.slice( 4, 4 ).read() );
+        assertArrayEquals( new byte[]{8, 9}, source.slice( 8, 10 ).read() );
+        assertInstanceOf( RefPathByteSource.class, source.slice( 7, 2 ) );
+        assertTrue( source.slice( 20, 2 ).isEmpty() );
+    }
+
+    @Test
+    public void testCopyTo()
+        throws Exception
+    {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals( 10, source( true ).copyTo( out ) );
+        assertArrayEquals( new byte[]{0, 1, 2, 3, 4, 5, 6, 7, 8, 9}, out.toByteArray() );
+    }
+
+    @Test
+    public void testAsByteBuffers()
+        throws Exception
+    {
+        final List<ByteBuffer> buffers = source( true ).asByteBuffers();
+        assertEquals( 3, buffers.size() );
+        assertTrue( buffers.stream().allMatch( ByteBuffer::isReadOnly ) );
+        assertEquals( 4, buffers.get( 2 ).remaining() );
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for ( ByteBuffer buffer : buffers )
+        {
+            final byte[] bytes = new byte[buffer.remaining()];
+            buffer.get( bytes );
+            out.write( bytes );
+        }
+        assertArrayEquals( ByteSource.wrap( new byte[]{0, 1, 2, 3, 4, 5, 6, 7, 8, 9} ).read(), out.toByteArray() );
+    }
+}
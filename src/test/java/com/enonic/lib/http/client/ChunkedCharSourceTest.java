@@ -0,0 +1,127 @@
+package com.enonic.lib.http.client;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.google.common.io.CharStreams;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class ChunkedCharSourceTest
+{
+    private static final String TEXT = "ascii æøå €uro 😀 ";
+
+    private Path tempFile;
+
+    @BeforeEach
+    public void setUp()
+        throws Exception
+    {
+        tempFile = Files.createTempFile( "xphttp", ".tmp" );
+    }
+
+    @AfterEach
+    public final void shutdown()
+        throws Exception
+    {
+        Files.deleteIfExists( tempFile );
+    }
+
+    @Test
+    public void testUtf8()
+        throws Exception
+    {
+        assertDecoded( TEXT.repeat( 1000 ), StandardCharsets.UTF_8, 7, false );
+        assertDecoded( TEXT.repeat( 1000 ), StandardCharsets.UTF_8, 7, true );
+    }
+
+    @Test
+    public void testAscii()
+        throws Exception
+    {
+        assertDecoded( "plain ascii text ".repeat( 1000 ), StandardCharsets.UTF_8, 8192, true );
+    }
+
+    @Test
+    public void testCharsetsWithoutFastPath()
+        throws Exception
+    {
+        assertDecoded( TEXT.repeat( 1000 ), StandardCharsets.UTF_16, 5, false );
+        assertDecoded( TEXT.repeat( 1000 ), StandardCharsets.UTF_16LE, 3, true );
+        assertDecoded( TEXT.repeat( 1000 ), Charset.forName( "GB18030" ), 7, true );
+    }
+
+    @Test
+    public void testEmpty()
+        throws Exception
+    {
+        assertEquals( "", new ChunkedByteSource( new ArrayList<>(), null ).asCharSource( StandardCharsets.UTF_16 ).read() );
+    }
+
+    @Test
+    public void testMalformed()
+        throws Exception
+    {
+        final List<ByteBuffer> chunks = List.of( ByteBuffer.wrap( new byte[]{'a', (byte) 0xC3} ), ByteBuffer.wrap( new byte[]{'b'} ) );
+        assertEquals( "a\uFFFDb", new ChunkedByteSource( chunks, null ).asCharSource( StandardCharsets.UTF_8 ).read() );
+        assertEquals( new String( new byte[]{'a', (byte) 0xC3, 'b'}, StandardCharsets.UTF_16LE ),
+                      new ChunkedByteSource( chunks, null ).asCharSource( StandardCharsets.UTF_16LE ).read() );
+    }
+
+    @Test
+    public void testSliceOfSpilled()
+        throws Exception
+    {
+        assertSliceDecoded( StandardCharsets.UTF_8 );
+        assertSliceDecoded( StandardCharsets.UTF_16LE );
+    }
+
+    private void assertSliceDecoded( final Charset charset )
+        throws Exception
+    {
+        final byte[] bytes = TEXT.repeat( 1000 ).getBytes( charset );
+        final int heapBytes = bytes.length / 2;
+        Files.write( tempFile, Arrays.copyOfRange( bytes, heapBytes, bytes.length ) );
+        final ChunkedByteSource source =
+            new ChunkedByteSource( List.of( ByteBuffer.wrap( bytes, 0, heapBytes ).slice() ), new RefPathByteSource( tempFile ) );
+
+        // starts in the heap chunks and ends within the file, well before its end
+        final int offset = 10;
+        final int length = bytes.length - 1000;
+        final String expected = new String( bytes, offset, length, charset );
+        assertEquals( expected, source.slice( offset, length ).asCharSource( charset ).read() );
+    }
+
+    private void assertDecoded( final String text, final Charset charset, final int chunkSize, final boolean spill )
+        throws Exception
+    {
+        final byte[] bytes = text.getBytes( charset );
+        final int heapBytes = spill ? bytes.length / 2 : bytes.length;
+
+        final List<ByteBuffer> chunks = new ArrayList<>();
+        for ( int i = 0; i < heapBytes; i += chunkSize )
+        {
+            chunks.add( ByteBuffer.wrap( bytes, i, Math.min( chunkSize, heapBytes - i ) ).slice() );
+        }
+        RefPathByteSource file = null;
+        if ( spill )
+        {
+            Files.write( tempFile, Arrays.copyOfRange( bytes, heapBytes, bytes.length ) );
+            file = new RefPathByteSource( tempFile );
+        }
+
+        final ChunkedByteSource source = new ChunkedByteSource( chunks, file );
+        assertEquals( text, source.asCharSource( charset ).read() );
+        assertEquals( text, CharStreams.toString( source.asCharSource( charset ).openStream() ) );
+    }
+}
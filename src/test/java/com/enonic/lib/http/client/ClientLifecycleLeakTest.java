@@ -0,0 +1,260 @@
+package com.enonic.lib.http.client;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.LongSupplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.sun.management.ThreadMXBean;
+import com.sun.management.UnixOperatingSystemMXBean;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Sustained churn of clients and requests against a local server, asserting that selector threads of dropped clients,
+ * shared worker threads, temporary files of spilled bodies and file descriptors stay bounded, and that allocation per request
+ * doesn't grow.
+ */
+public class ClientLifecycleLeakTest
+{
+    private static final int SPILLED_SIZE = HttpRequestHandler.MAX_IN_MEMORY_BODY_STREAM_BYTES + 64 * 1024;
+
+    /**
+     * Time allowed for garbage collection, cleaners and selector threads to release resources of dropped clients and bodies.
+     */
+    private static final long RELEASE_TIMEOUT_MS = 20_000;
+
+    private static final byte[] SMALL = new byte[1024];
+
+    private static final byte[] SPILLED = new byte[SPILLED_SIZE];
+
+    private HttpServer server;
+
+    private String baseUrl;
+
+    @BeforeEach
+    public final void setup()
+        throws Exception
+    {
+        server = HttpServer.create( new InetSocketAddress( InetAddress.getLoopbackAddress(), 0 ), 0 );
+        server.setExecutor( Executors.newFixedThreadPool( 4 ) );
+        server.createContext( "/small", exchange -> respond( exchange, SMALL ) );
+        server.createContext( "/spilled", exchange -> respond( exchange, SPILLED ) );
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @AfterEach
+    public final void shutdown()
+    {
+        HttpClientFactory.clearCache();
+        server.stop( 0 );
+    }
+
+    private static void respond( final HttpExchange exchange, final byte[] body )
+        throws IOException
+    {
+        try (InputStream is = exchange.getRequestBody())
+        {
+            is.readAllBytes();
+        }
+        exchange.getResponseHeaders().set( "Content-Type", "application/octet-stream" );
+        exchange.sendResponseHeaders( 200, body.length );
+        try (OutputStream os = exchange.getResponseBody())
+        {
+            os.write( body );
+        }
+    }
+
+    private ResponseMapper request( final String path, final long connectTimeout )
+        throws Exception
+    {
+        final HttpRequestHandler handler = new HttpRequestHandler();
+        handler.setUrl( baseUrl + path );
+        handler.setMethod( "GET" );
+        handler.setBodyMode( "bytes" );
+        handler.setConnectionTimeout( connectTimeout );
+        final ResponseMapper response = handler.request();
+        assertEquals( 200, response.status() );
+        return response;
+    }
+
+    @Test
+    public void testClientChurnReleasesSelectorThreads()
+        throws Exception
+    {
+        final long before = threadCount( "SelectorManager" );
+
+        // each connect timeout is a distinct client configuration, so every request creates a client
+        for ( int i = 0; i < 64; i++ )
+        {
+            request( "/small", 10_000 + i );
+        }
+        assertTrue( threadCount( "SelectorManager" ) > before );
+
+        HttpClientFactory.clearCache();
+        awaitAtMost( "selector threads", () -> threadCount( "SelectorManager" ), before + 2 );
+    }
+
+    @Test
+    public void testEvictionChurnReleasesSelectorThreads()
+        throws Exception
+    {
+        final long before = threadCount( "SelectorManager" );
+
+        for ( int i = 0; i < 64; i++ )
+        {
+            request( "/small", 10_000 );
+            HttpClientFactory.flush();
+        }
+
+        awaitAtMost( "selector threads", () -> threadCount( "SelectorManager" ), before + 2 );
+    }
+
+    @Test
+    public void testSharedWorkersBounded()
+        throws Exception
+    {
+        final int concurrency = 8;
+        final ExecutorService callers = Executors.newFixedThreadPool( concurrency );
+        try
+        {
+            final List<Future<?>> futures = new ArrayList<>();
+            for ( int i = 0; i < 400; i++ )
+            {
+                futures.add( callers.submit( () -> request( "/small", 10_000 ) ) );
+            }
+            for ( Future<?> future : futures )
+            {
+                future.get();
+            }
+        }
+        finally
+        {
+            callers.shutdownNow();
+        }
+
+        // idle workers are reused, the pool grows with concurrent exchanges, not with the number of requests
+        final long workers = threadCount( "lib-httpclient-Shared-Worker-" );
+        assertTrue( workers <= 4L * concurrency, "shared workers: " + workers );
+    }
+
+    @Test
+    public void testSpilledBodiesDeleteTempFiles()
+        throws Exception
+    {
+        final long before = tempFileCount();
+
+        for ( int i = 0; i < 16; i++ )
+        {
+            final ResponseMapper response = request( "/spilled", 10_000 );
+            assertEquals( SPILLED_SIZE, response.bodySize() );
+        }
+
+        awaitAtMost( "temp files", ClientLifecycleLeakTest::tempFileCount, before );
+    }
+
+    @Test
+    public void testFileDescriptorsBounded()
+        throws Exception
+    {
+        final OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        assumeTrue( os instanceof UnixOperatingSystemMXBean );
+        final UnixOperatingSystemMXBean unix = (UnixOperatingSystemMXBean) os;
+
+        request( "/small", 10_000 );
+        final long before = unix.getOpenFileDescriptorCount();
+
+        for ( int i = 0; i < 32; i++ )
+        {
+            request( "/small", 20_000 + i );
+            request( "/spilled", 20_000 + i );
+        }
+
+        HttpClientFactory.clearCache();
+        awaitAtMost( "open file descriptors", unix::getOpenFileDescriptorCount, before + 16 );
+    }
+
+    @Test
+    public void testAllocationPerRequest()
+        throws Exception
+    {
+        final ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue( threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled() );
+
+        for ( int i = 0; i < 200; i++ )
+        {
+            request( "/small", 10_000 );
+        }
+
+        final int requests = 500;
+        final long start = threads.getCurrentThreadAllocatedBytes();
+        for ( int i = 0; i < requests; i++ )
+        {
+            request( "/small", 10_000 );
+        }
+        final long perRequest = ( threads.getCurrentThreadAllocatedBytes() - start ) / requests;
+
+        // bytes allocated by the calling thread: request building, buffering and mapping of a 1 KiB body
+        assertTrue( perRequest < 64 * 1024, "bytes allocated per request: " + perRequest );
+    }
+
+    private static long threadCount( final String namePart )
+    {
+        return Thread.getAllStackTraces().keySet().stream().filter( t -> t.isAlive() && t.getName().contains( namePart ) ).count();
+    }
+
+    private static long tempFileCount()
+    {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream( Path.of( System.getProperty( "java.io.tmpdir" ) ), "xphttp*.tmp" ))
+        {
+            long count = 0;
+            for ( Path ignored : files )
+            {
+                count++;
+            }
+            return count;
+        }
+        catch ( IOException e )
+        {
+            throw new AssertionError( e );
+        }
+    }
+
+    /**
+     * Collects garbage until the value drops to the bound, failing if it doesn't within {@link #RELEASE_TIMEOUT_MS}.
+     */
+    private static void awaitAtMost( final String what, final LongSupplier value, final long bound )
+        throws InterruptedException
+    {
+        final long deadline = System.currentTimeMillis() + RELEASE_TIMEOUT_MS;
+        long current = value.getAsLong();
+        while ( current > bound && System.currentTimeMillis() < deadline )
+        {
+            System.gc();
+            Thread.sleep( 100 );
+            current = value.getAsLong();
+        }
+        assertTrue( current <= bound, what + ": " + current + ", expected at most " + bound );
+    }
+}
@@ -0,0 +1,148 @@
+package com.enonic.lib.http.client;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.http.HttpConnectTimeoutException;
+import java.net.http.HttpTimeoutException;
+import java.util.UUID;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ClientMetricsTest
+{
+    private static ClientMetrics.Destination newDestination()
+    {
+        return ClientMetrics.destination( "C:H:" + UUID.randomUUID() + ":80" );
+    }
+
+    @Test
+    public void testDestinationIsShared()
+    {
+        final ClientMetrics.Destination destination = newDestination();
+
+        assertSame( destination, ClientMetrics.destination( destination.getDestination() ) );
+        assertTrue( ClientMetrics.destinations().contains( destination ) );
+    }
+
+    @Test
+    public void testStatusClasses()
+    {
+        final ClientMetrics.Destination destination = newDestination();
+        for ( int status : new int[]{101, 200, 204, 301, 404, 500, 503} )
+        {
+            destination.started();
+            destination.exchanged( status, 1_000_000 );
+        }
+
+        assertEquals( 7, destination.getRequests() );
+        assertEquals( 1, destination.getResponses1xx() );
+        assertEquals( 2, destination.getResponses2xx() );
+        assertEquals( 1, destination.getResponses3xx() );
+        assertEquals( 1, destination.getResponses4xx() );
+        assertEquals( 2, destination.getResponses5xx() );
+    }
+
+    @Test
+    public void testFailures()
+    {
+        final ClientMetrics.Destination destination = newDestination();
+        destination.failed( new HttpConnectTimeoutException( "connect" ) );
+        destination.failed( new IOException( "wrapped", new HttpTimeoutException( "read" ) ) );
+        destination.failed( new IOException( "reset" ) );
+        destination.spilled();
+
+        assertEquals( 2, destination.getTimeouts() );
+        assertEquals( 1, destination.getErrors() );
+        assertEquals( 1, destination.getSpills() );
+        assertFalse( ClientMetrics.isTimeout( new IOException() ) );
+    }
+
+    @Test
+    public void testLatency()
+    {
+        final ClientMetrics.Destination destination = newDestination();
+        for ( int i = 1; i <= 100; i++ )
+        {
+            destination.exchanged( 200, i * 1_000_000L );
+        }
+
+        final Histogram latency = destination.latencySnapshot();
+        assertEquals( 100, latency.getTotalCount() );
+        assertEquals( 50, destination.getLatencyP50Millis(), 0.1 );
+        assertEquals( 99, destination.getLatencyP99Millis(), 0.1 );
+        assertEquals( 100, destination.getLatencyMaxMillis(), 0.1 );
+
+        destination.exchanged( 200, 200_000_000L );
+        assertEquals( 101, destination.latencySnapshot().getTotalCount() );
+        assertEquals( 200, destination.getLatencyMaxMillis(), 0.2 );
+    }
+
+    @Test
+    public void testMXBean()
+        throws Exception
+    {
+        final ClientMetrics.Destination destination = newDestination();
+        destination.started();
+        destination.exchanged( 200, 1_000_000 );
+
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        final ObjectName name = new ObjectName( destination.objectName() );
+        assertTrue( server.isRegistered( name ) );
+        assertEquals( 1L, server.getAttribute( name, "Responses2xx" ) );
+        assertEquals( 1L, server.getAttribute( name, "InFlight" ) );
+        assertEquals( destination.getDestination(), server.getAttribute( name, "Destination" ) );
+
+        destination.completed();
+        assertEquals( 0L, server.getAttribute( name, "InFlight" ) );
+    }
+
+    @Test
+    public void testEvict()
+        throws Exception
+    {
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        final ClientMetrics.Destination idle = newDestination();
+        final ClientMetrics.Destination busy = newDestination();
+        busy.started();
+        try
+        {
+            ClientMetrics.evict( 0, Integer.MAX_VALUE );
+
+            assertFalse( ClientMetrics.destinations().contains( idle ) );
+            assertFalse( server.isRegistered( new ObjectName( idle.objectName() ) ) );
+            // in flight
+            assertTrue( ClientMetrics.destinations().contains( busy ) );
+            assertTrue( server.isRegistered( new ObjectName( busy.objectName() ) ) );
+        }
+        finally
+        {
+            busy.completed();
+        }
+    }
+
+    @Test
+    public void testEvictLeastRecentlyUsed()
+        throws Exception
+    {
+        // leaves only destinations of other tests still in flight, which are kept
+        ClientMetrics.evict( 0, Integer.MAX_VALUE );
+        final ClientMetrics.Destination older = newDestination();
+        Thread.sleep( 1 );
+        final ClientMetrics.Destination newer = newDestination();
+
+        ClientMetrics.evict( Long.MAX_VALUE, ClientMetrics.destinations().size() - 1 );
+
+        assertFalse( ClientMetrics.destinations().contains( older ) );
+        assertTrue( ClientMetrics.destinations().contains( newer ) );
+        assertSame( newer, ClientMetrics.destination( newer.getDestination() ) );
+    }
+}
@@ -0,0 +1,124 @@
+package com.enonic.lib.http.client;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.http.HttpHeaders;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ContentDecodersTest
+{
+    private static final String TEXT = "hello ".repeat( 1000 );
+
+    @Test
+    public void testAcceptEncoding()
+    {
+        assertEquals( "zstd, br, gzip, deflate", ContentDecoders.acceptEncoding() );
+    }
+
+    @Test
+    public void testGzip()
+        throws Exception
+    {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (OutputStream os = new GZIPOutputStream( out ))
+        {
+            os.write( TEXT.getBytes( StandardCharsets.UTF_8 ) );
+        }
+
+        final ContentDecoders.Stats stats = ContentDecoders.stats().get( "gzip" );
+        final long responses = stats.getResponses();
+        final long decodedBytes = stats.getDecodedBytes();
+
+        assertEquals( TEXT, decode( out.toByteArray(), "gzip" ) );
+        assertEquals( responses + 1, stats.getResponses() );
+        assertEquals( decodedBytes + TEXT.length(), stats.getDecodedBytes() );
+        assertTrue( stats.getRatio() > 1 );
+    }
+
+    @Test
+    public void testDeflate()
+        throws Exception
+    {
+        for ( boolean nowrap : new boolean[]{false, true} )
+        {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try (OutputStream os = new DeflaterOutputStream( out, new Deflater( Deflater.DEFAULT_COMPRESSION, nowrap ) ))
+            {
+                os.write( TEXT.getBytes( StandardCharsets.UTF_8 ) );
+            }
+
+            assertEquals( TEXT, decode( out.toByteArray(), "Deflate" ) );
+        }
+    }
+
+    @Test
+    public void testZstd()
+        throws Exception
+    {
+        // single segment frame with a raw block
+        final byte[] frame = {0x28, (byte) 0xb5, 0x2f, (byte) 0xfd, 0x20, 0x05, 0x29, 0x00, 0x00, 'h', 'e', 'l', 'l', 'o'};
+
+        assertEquals( "hello", decode( frame, "zstd" ) );
+    }
+
+    @Test
+    public void testEmptyBody()
+        throws Exception
+    {
+        assertEquals( "", decode( new byte[0], "gzip" ) );
+    }
+
+    @Test
+    public void testUnsupportedEncoding()
+    {
+        final InputStream body = new ByteArrayInputStream( new byte[]{1} );
+        final HttpHeaders headers = headers( "compress" );
+
+        assertNull( ContentDecoders.decodableEncoding( headers ) );
+        assertSame( body, ContentDecoders.decode( body, headers ) );
+        assertSame( headers, ContentDecoders.decodedHeaders( headers ) );
+    }
+
+    @Test
+    public void testDecodedHeaders()
+    {
+        final HttpHeaders headers = HttpHeaders.of(
+            Map.of( "content-encoding", List.of( "gzip" ), "content-length", List.of( "10" ), "content-type", List.of( "text/plain" ) ),
+            ( name, value ) -> true );
+
+        final HttpHeaders decoded = ContentDecoders.decodedHeaders( headers );
+
+        assertFalse( decoded.firstValue( "content-encoding" ).isPresent() );
+        assertFalse( decoded.firstValue( "content-length" ).isPresent() );
+        assertEquals( "text/plain", decoded.firstValue( "content-type" ).orElseThrow() );
+    }
+
+    private static String decode( final byte[] encoded, final String encoding )
+        throws Exception
+    {
+        try (InputStream is = ContentDecoders.decode( new ByteArrayInputStream( encoded ), headers( encoding ) ))
+        {
+            return new String( is.readAllBytes(), StandardCharsets.UTF_8 );
+        }
+    }
+
+    private static HttpHeaders headers( final String encoding )
+    {
+        return HttpHeaders.of( Map.of( "content-encoding", List.of( encoding ) ), ( name, value ) -> true );
+    }
+}
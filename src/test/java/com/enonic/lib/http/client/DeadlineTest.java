@@ -0,0 +1,87 @@
+package com.enonic.lib.http.client;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class DeadlineTest
+{
+    @Test
+    public void testNone()
+        throws Exception
+    {
+        final Deadline deadline = Deadline.after( null );
+        assertSame( Deadline.NONE, deadline );
+        assertFalse( deadline.isSet() );
+        deadline.check();
+
+        final Duration timeout = Duration.ofSeconds( 10 );
+        assertSame( timeout, deadline.cap( timeout ) );
+
+        final InputStream body = new ByteArrayInputStream( new byte[1] );
+        assertSame( body, deadline.guard( body ) );
+    }
+
+    @Test
+    public void testCap()
+    {
+        final Deadline deadline = Deadline.after( 1000L );
+        assertTrue( deadline.isSet() );
+        assertTrue( deadline.cap( Duration.ofSeconds( 10 ) ).toMillis() <= 1000 );
+        assertEquals( Duration.ofMillis( 100 ), deadline.cap( Duration.ofMillis( 100 ) ) );
+    }
+
+    @Test
+    public void testExpired()
+    {
+        final Deadline deadline = Deadline.after( 0L );
+
+        final HttpTimeoutException e = assertThrows( HttpTimeoutException.class, deadline::check );
+        assertEquals( "Request deadline exceeded", e.getMessage() );
+        assertEquals( Duration.ofMillis( 1 ), deadline.cap( Duration.ofSeconds( 10 ) ) );
+    }
+
+    @Test
+    public void testGuard()
+        throws Exception
+    {
+        final Deadline deadline = Deadline.after( 50L );
+        final InputStream body = deadline.guard( new ByteArrayInputStream( new byte[]{1, 2, 3} ) );
+        assertEquals( 1, body.read() );
+
+        Thread.sleep( 100 );
+
+        final HttpTimeoutException e = assertThrows( HttpTimeoutException.class, () -> body.read( new byte[2], 0, 2 ) );
+        assertEquals( "Request deadline exceeded", e.getMessage() );
+    }
+
+    @Test
+    public void testInherited()
+        throws Exception
+    {
+        final Deadline outer = Deadline.after( 1000L );
+
+        outer.scope( () -> {
+            assertSame( outer, Deadline.after( null ) );
+            assertSame( outer, Deadline.after( 60_000L ) );
+
+            final Deadline inner = Deadline.after( 100L );
+            assertTrue( inner.remainingNanos() < outer.remainingNanos() );
+            return inner.scope( () -> {
+                assertSame( inner, Deadline.after( null ) );
+                return null;
+            } );
+        } );
+
+        assertSame( Deadline.NONE, Deadline.after( null ) );
+    }
+}
@@ -0,0 +1,64 @@
+package com.enonic.lib.http.client;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class DigestingInputStreamTest
+{
+    @Test
+    public void testSha256()
+        throws Exception
+    {
+        final DigestingInputStream is = stream( "abc", "sha256" );
+        is.readAllBytes();
+
+        assertTrue( is.isComplete() );
+        assertEquals( 3, is.getCount() );
+        assertEquals( "ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad", is.hexDigest() );
+    }
+
+    @Test
+    public void testMd5WithSkip()
+        throws Exception
+    {
+        final DigestingInputStream is = stream( "abc", "MD5" );
+        assertEquals( 'a', is.read() );
+        assertEquals( 1, is.skip( 1 ) );
+        assertFalse( is.isComplete() );
+        is.readAllBytes();
+
+        assertTrue( is.isComplete() );
+        assertEquals( 3, is.getCount() );
+        assertEquals( "900150983cd24fb0d6963f7d28e17f72", is.hexDigest() );
+    }
+
+    @Test
+    public void testInvalidAlgorithm()
+    {
+        assertThrows( IllegalArgumentException.class, () -> DigestingInputStream.newDigest( "crc32" ) );
+        assertThrows( IllegalArgumentException.class, () -> DigestingInputStream.newDigest( "SHA-256" ) );
+    }
+
+    @Test
+    public void testChecksumName()
+    {
+        assertEquals( "sha256", DigestingInputStream.checksumName( "SHA256" ) );
+        assertEquals( "md5", DigestingInputStream.checksumName( "MD5" ) );
+        assertThrows( IllegalArgumentException.class, () -> DigestingInputStream.checksumName( "SHA-256" ) );
+        assertThrows( IllegalArgumentException.class, () -> DigestingInputStream.checksumName( "sha1" ) );
+    }
+
+    private static DigestingInputStream stream( final String text, final String algorithm )
+    {
+        final InputStream in = new ByteArrayInputStream( text.getBytes( StandardCharsets.UTF_8 ) );
+        return new DigestingInputStream( in, DigestingInputStream.newDigest( algorithm ) );
+    }
+}
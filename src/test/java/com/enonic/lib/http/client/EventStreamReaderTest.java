@@ -0,0 +1,150 @@
+package com.enonic.lib.http.client;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.enonic.xp.script.serializer.MapSerializable;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class EventStreamReaderTest
+{
+    @Test
+    public void testServerSentEvents()
+        throws Exception
+    {
+        final RecordingListener listener = new RecordingListener();
+        final String body = ": comment\n" + "id: 1\n" + "event: greeting\n" + "data: hello\n" + "data:world\n" + "\n" + "retry: 3000\n" +
+            "data: second\r\n" + "\r\n" + "data: third\r" + "\r" + "id\n" + "data\n" + "\n" + "data: incomplete\n";
+
+        assertTrue( new EventStreamReader( EventStreamReader.Format.SSE, listener ).read( stream( body ) ) );
+
+        assertEquals( 4, listener.events.size() );
+        assertEvent( listener.events.get( 0 ), "1", "greeting", "hello\nworld", null );
+        assertEvent( listener.events.get( 1 ), "1", "message", "second", 3000L );
+        assertEvent( listener.events.get( 2 ), "1", "message", "third", 3000L );
+        assertEvent( listener.events.get( 3 ), "", "message", "", 3000L );
+    }
+
+    @Test
+    public void testLinesSplitAcrossReads()
+        throws Exception
+    {
+        final RecordingListener listener = new RecordingListener();
+        final InputStream input = new SequenceInputStream(
+            Collections.enumeration( List.of( stream( "fir" ), stream( "st\r" ), stream( "\nsecond\næ" ), stream( "øå" ) ) ) );
+
+        assertTrue( new EventStreamReader( EventStreamReader.Format.LINES, listener ).read( input ) );
+
+        assertEquals( List.of( "first", "second", "æøå" ), listener.lines );
+        assertEquals( 4, listener.chunks );
+        assertTrue( listener.events.isEmpty() );
+    }
+
+    @Test
+    public void testNdjson()
+        throws Exception
+    {
+        final RecordingListener listener = new RecordingListener();
+
+        assertTrue( new EventStreamReader( EventStreamReader.Format.NDJSON, listener ).read( stream( "{\"a\":1}\n\n[2]" ) ) );
+
+        assertEquals( 2, listener.events.size() );
+        assertEquals( "{\"a\":1}", ( (EventStreamReader.JsonEvent) listener.events.get( 0 ) ).line );
+        assertEquals( "[2]", ( (EventStreamReader.JsonEvent) listener.events.get( 1 ) ).line );
+    }
+
+    @Test
+    public void testStop()
+        throws Exception
+    {
+        final RecordingListener listener = new RecordingListener();
+        listener.maxLines = 2;
+
+        assertFalse( new EventStreamReader( EventStreamReader.Format.LINES, listener ).read( stream( "a\nb\nc\n" ) ) );
+
+        assertEquals( List.of( "a", "b" ), listener.lines );
+    }
+
+    @Test
+    public void testLineTooLong()
+    {
+        final RecordingListener listener = new RecordingListener();
+        final InputStream input = new ByteArrayInputStream( new byte[EventStreamReader.MAX_LINE_BYTES + 1] );
+
+        assertThrows( IOException.class, () -> new EventStreamReader( EventStreamReader.Format.LINES, listener ).read( input ) );
+    }
+
+    @Test
+    public void testEventTooLarge()
+    {
+        final RecordingListener listener = new RecordingListener();
+        final String dataLine = "data: " + "x".repeat( EventStreamReader.MAX_LINE_BYTES / 2 ) + "\n";
+        // data lines within the line limit, but no blank line ending the event
+        final InputStream input = stream( dataLine.repeat( 9 ) );
+
+        final IOException e =
+            assertThrows( IOException.class, () -> new EventStreamReader( EventStreamReader.Format.SSE, listener ).read( input ) );
+        assertEquals( "Stream event exceeds " + EventStreamReader.MAX_EVENT_CHARS + " characters", e.getMessage() );
+        assertTrue( listener.events.isEmpty() );
+    }
+
+    private static void assertEvent( final MapSerializable event, final String id, final String type, final String data, final Long retry )
+    {
+        final EventStreamReader.ServerSentEvent sse = assertInstanceOf( EventStreamReader.ServerSentEvent.class, event );
+        assertEquals( id, sse.id );
+        assertEquals( type, sse.event );
+        assertEquals( data, sse.data );
+        assertEquals( retry, sse.retry );
+    }
+
+    private static InputStream stream( final String text )
+    {
+        return new ByteArrayInputStream( text.getBytes( StandardCharsets.UTF_8 ) );
+    }
+
+    private static final class RecordingListener
+        implements EventStreamReader.Listener
+    {
+        final List<String> lines = new ArrayList<>();
+
+        final List<MapSerializable> events = new ArrayList<>();
+
+        int chunks;
+
+        int maxLines = Integer.MAX_VALUE;
+
+        @Override
+        public boolean onChunk( final byte[] bytes )
+        {
+            chunks++;
+            return true;
+        }
+
+        @Override
+        public boolean onLine( final String line )
+        {
+            lines.add( line );
+            return lines.size() < maxLines;
+        }
+
+        @Override
+        public boolean onEvent( final MapSerializable event )
+        {
+            events.add( event );
+            return true;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.enonic.lib.http.client;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ExchangeTimingsTest
+{
+    @Test
+    public void testNotReached()
+    {
+        final ExchangeTimings timings = new ExchangeTimings();
+
+        assertEquals( -1, timings.millis( ExchangeTimings.Phase.HEADERS ) );
+    }
+
+    @Test
+    public void testFirstMarkWins()
+        throws Exception
+    {
+        final ExchangeTimings timings = new ExchangeTimings();
+        timings.mark( ExchangeTimings.Phase.FIRST_BYTE );
+        final double first = timings.millis( ExchangeTimings.Phase.FIRST_BYTE );
+        Thread.sleep( 5 );
+        timings.mark( ExchangeTimings.Phase.FIRST_BYTE );
+
+        assertTrue( first > 0 );
+        assertEquals( first, timings.millis( ExchangeTimings.Phase.FIRST_BYTE ) );
+    }
+
+    @Test
+    public void testRelativeToStart()
+        throws Exception
+    {
+        final ExchangeTimings timings = new ExchangeTimings();
+        timings.mark( ExchangeTimings.Phase.REQUEST_BUILT );
+        Thread.sleep( 20 );
+        timings.mark( ExchangeTimings.Phase.MAPPED );
+
+        assertTrue( timings.millis( ExchangeTimings.Phase.REQUEST_BUILT ) < timings.millis( ExchangeTimings.Phase.MAPPED ) );
+        assertTrue( timings.millis( ExchangeTimings.Phase.MAPPED ) >= 20 );
+    }
+}
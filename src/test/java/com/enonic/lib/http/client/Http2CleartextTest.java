@@ -0,0 +1,159 @@
+package com.enonic.lib.http.client;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http2.server.HTTP2CServerConnectionFactory;
+import org.eclipse.jetty.io.Content;
+import org.eclipse.jetty.server.Handler;
+import org.eclipse.jetty.server.HttpConfiguration;
+import org.eclipse.jetty.server.HttpConnectionFactory;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Response;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.util.Callback;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Requests over http:// against a local server accepting both HTTP/1.1 and h2c.
+ */
+public class Http2CleartextTest
+{
+    private static final int CONCURRENCY = 8;
+
+    private final Queue<Exchange> exchanges = new ConcurrentLinkedQueue<>();
+
+    private Server server;
+
+    private String url;
+
+    /**
+     * @param upgrade the Upgrade header of the request, null if there was none
+     */
+    private record Exchange(String version, String connection, String upgrade)
+    {
+    }
+
+    @BeforeEach
+    public final void setup()
+        throws Exception
+    {
+        server = new Server();
+        final HttpConfiguration config = new HttpConfiguration();
+        final ServerConnector connector = new ServerConnector( server, new HttpConnectionFactory( config ),
+                                                               new HTTP2CServerConnectionFactory( config ) );
+        connector.setHost( "127.0.0.1" );
+        connector.setPort( 0 );
+        server.addConnector( connector );
+        server.setHandler( new Handler.Abstract()
+        {
+            @Override
+            public boolean handle( final Request request, final Response response, final Callback callback )
+                throws Exception
+            {
+                exchanges.add( new Exchange( request.getConnectionMetaData().getHttpVersion().asString(),
+                                             request.getConnectionMetaData().getRemoteSocketAddress().toString(),
+                                             request.getHeaders().get( HttpHeader.UPGRADE ) ) );
+                // keeps the exchanges overlapping, so HTTP/1.1 can't reuse a connection between them
+                Thread.sleep( 100 );
+                response.getHeaders().put( HttpHeader.CONTENT_TYPE, "text/plain" );
+                Content.Sink.write( response, true, "ok", callback );
+                return true;
+            }
+        } );
+        server.start();
+        url = "http://127.0.0.1:" + connector.getLocalPort() + "/service";
+    }
+
+    @AfterEach
+    public final void shutdown()
+        throws Exception
+    {
+        HttpClientFactory.clearCache();
+        server.stop();
+    }
+
+    private void request( final boolean http2Cleartext )
+        throws Exception
+    {
+        final HttpRequestHandler handler = new HttpRequestHandler();
+        handler.setUrl( url );
+        handler.setMethod( "GET" );
+        handler.setHttp2Cleartext( http2Cleartext );
+        assertEquals( 200, handler.request().status() );
+    }
+
+    private void concurrentRequests( final boolean http2Cleartext )
+        throws Exception
+    {
+        final ExecutorService callers = Executors.newFixedThreadPool( CONCURRENCY );
+        try
+        {
+            final List<Future<?>> futures = new ArrayList<>();
+            for ( int i = 0; i < CONCURRENCY * 4; i++ )
+            {
+                futures.add( callers.submit( () -> {
+                    request( http2Cleartext );
+                    return null;
+                } ) );
+            }
+            for ( Future<?> future : futures )
+            {
+                future.get();
+            }
+        }
+        finally
+        {
+            callers.shutdownNow();
+        }
+    }
+
+    private Set<String> versions()
+    {
+        return exchanges.stream().map( Exchange::version ).collect( Collectors.toSet() );
+    }
+
+    private Set<String> connections()
+    {
+        return exchanges.stream().map( Exchange::connection ).collect( Collectors.toSet() );
+    }
+
+    @Test
+    public void testHttp11ByDefault()
+        throws Exception
+    {
+        concurrentRequests( false );
+
+        assertEquals( Set.of( "HTTP/1.1" ), versions() );
+        assertTrue( exchanges.stream().allMatch( exchange -> exchange.upgrade() == null ) );
+        assertTrue( connections().size() > 1, "concurrent HTTP/1.1 requests use a connection each" );
+    }
+
+    @Test
+    public void testUpgradedAndMultiplexed()
+        throws Exception
+    {
+        // the first request upgrades the connection, the following ones find it in the pool
+        request( true );
+        exchanges.clear();
+
+        concurrentRequests( true );
+
+        assertEquals( Set.of( "HTTP/2.0" ), versions() );
+        assertEquals( 1, connections().size() );
+    }
+}
@@ -0,0 +1,110 @@
+package com.enonic.lib.http.client;
+
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.util.List;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HttpClientFactoryTest
+{
+    private static final URI URI_A = URI.create( "https://a.example.com/path" );
+
+    private static final URI URI_B = URI.create( "http://b.example.com:8080/path" );
+
+    @AfterEach
+    public final void clear()
+    {
+        HttpClientFactory.clearCache();
+    }
+
+    private static HttpClient client( final String user, final URI uri )
+        throws Exception
+    {
+        return HttpClientFactory.getHttpClient( HttpClientFactory.params().authUser( user ).authPassword( "secret" ).build(), uri );
+    }
+
+    @Test
+    public void testCachedClients()
+        throws Exception
+    {
+        client( "user", URI_A );
+        client( "user", URI_B );
+        client( "other", URI_A );
+
+        final List<CachedClientInfo> clients = HttpClientFactory.cachedClients();
+        assertEquals( 2, clients.size() );
+
+        final CachedClientInfo client = clients.stream().filter( c -> c.getDestinations().size() == 2 ).findFirst().orElseThrow();
+        assertEquals( 16, client.getId().length() );
+        assertTrue( client.getIdentity().contains( "auth=***" ), client.getIdentity() );
+        assertFalse( client.getIdentity().contains( "secret" ) );
+        assertFalse( client.getIdentity().contains( "user" ) );
+        assertTrue( client.getDestinations().stream().anyMatch( d -> d.getDestination().equals( "S:H:a.example.com:443" ) ) );
+        assertTrue( client.getDestinations().stream().anyMatch( d -> d.getDestination().equals( "C:H:b.example.com:8080" ) ) );
+        assertTrue( client.getAgeMillis() >= 0 );
+    }
+
+    @Test
+    public void testEvict()
+        throws Exception
+    {
+        final HttpClient first = client( "user", URI_A );
+        final HttpClient other = client( "other", URI_A );
+        final String id = HttpClientFactory.cachedClients().get( 0 ).getId();
+
+        assertTrue( HttpClientFactory.evict( id ) );
+        assertFalse( HttpClientFactory.evict( id ) );
+        assertFalse( HttpClientFactory.evict( "unknown" ) );
+
+        final List<CachedClientInfo> clients = HttpClientFactory.cachedClients();
+        assertEquals( 1, clients.size() );
+        assertNotSame( id, clients.get( 0 ).getId() );
+        final boolean firstEvicted = client( "user", URI_A ) != first;
+        final boolean otherEvicted = client( "other", URI_A ) != other;
+        assertTrue( firstEvicted != otherEvicted );
+    }
+
+    @Test
+    public void testFlush()
+        throws Exception
+    {
+        final long creations = HttpClientFactory.creations();
+        final long evictions = HttpClientFactory.evictions();
+        final HttpClient first = client( "user", URI_A );
+        client( "other", URI_A );
+        assertEquals( creations + 2, HttpClientFactory.creations() );
+
+        assertEquals( 2, HttpClientFactory.flush() );
+        assertEquals( evictions + 2, HttpClientFactory.evictions() );
+        assertEquals( 0, HttpClientFactory.cachedClients().size() );
+        assertNotSame( first, client( "user", URI_A ) );
+    }
+
+    @Test
+    public void testMXBean()
+        throws Exception
+    {
+        client( "user", URI_A );
+
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        final ObjectName name = new ObjectName( ClientCache.OBJECT_NAME );
+        assertEquals( 1, server.getAttribute( name, "Size" ) );
+        final CompositeData[] clients = (CompositeData[]) server.getAttribute( name, "Clients" );
+        assertEquals( HttpClientFactory.cachedClients().get( 0 ).getId(), clients[0].get( "id" ) );
+
+        assertEquals( 1, server.invoke( name, "flush", new Object[0], new String[0] ) );
+        assertEquals( 0, server.getAttribute( name, "Size" ) );
+    }
+}
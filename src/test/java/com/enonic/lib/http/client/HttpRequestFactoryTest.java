@@ -0,0 +1,148 @@
+package com.enonic.lib.http.client;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.net.http.HttpRequest;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.google.common.io.ByteSource;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class HttpRequestFactoryTest
+{
+    private Path tempFile;
+
+    @BeforeEach
+    public void setUp()
+        throws Exception
+    {
+        tempFile = Files.createTempFile( "xphttp", ".tmp" );
+    }
+
+    @AfterEach
+    public final void shutdown()
+        throws Exception
+    {
+        Files.deleteIfExists( tempFile );
+    }
+
+    @Test
+    public void testArrayBody()
+        throws Exception
+    {
+        final HttpRequest.BodyPublisher publisher = HttpRequestFactory.byteSourceBodyPublisher( ByteSource.wrap( new byte[]{1, 2, 3} ) );
+
+        assertEquals( 3, publisher.contentLength() );
+        assertArrayEquals( new byte[]{1, 2, 3}, publish( publisher ) );
+    }
+
+    @Test
+    public void testFileBody()
+        throws Exception
+    {
+        Files.write( tempFile, new byte[]{1, 2, 3, 4} );
+
+        final HttpRequest.BodyPublisher publisher = HttpRequestFactory.byteSourceBodyPublisher( new RefPathByteSource( tempFile ) );
+
+        assertEquals( 4, publisher.contentLength() );
+        assertArrayEquals( new byte[]{1, 2, 3, 4}, publish( publisher ) );
+        // can be sent again, e.g. on redirect
+        assertArrayEquals( new byte[]{1, 2, 3, 4}, publish( publisher ) );
+    }
+
+    @Test
+    public void testFileSliceBody()
+        throws Exception
+    {
+        Files.write( tempFile, new byte[]{1, 2, 3, 4} );
+
+        final HttpRequest.BodyPublisher publisher =
+            HttpRequestFactory.byteSourceBodyPublisher( new RefPathByteSource( tempFile ).slice( 1, 2 ) );
+
+        assertEquals( 2, publisher.contentLength() );
+        assertArrayEquals( new byte[]{2, 3}, publish( publisher ) );
+    }
+
+    @Test
+    public void testChunkedBody()
+        throws Exception
+    {
+        Files.write( tempFile, new byte[]{5, 6} );
+        final ChunkedByteSource source = new ChunkedByteSource(
+            List.of( ByteBuffer.wrap( new byte[]{0, 1, 2, 0}, 1, 2 ).slice(), ByteBuffer.wrap( new byte[]{3, 4} ) ),
+            new RefPathByteSource( tempFile ) );
+
+        final HttpRequest.BodyPublisher publisher = HttpRequestFactory.byteSourceBodyPublisher( source );
+
+        assertEquals( 6, publisher.contentLength() );
+        assertArrayEquals( new byte[]{1, 2, 3, 4, 5, 6}, publish( publisher ) );
+    }
+
+    @Test
+    public void testStreamedBody()
+        throws Exception
+    {
+        final ByteSource unknownSize = new ByteSource()
+        {
+            @Override
+            public InputStream openStream()
+            {
+                return new ByteArrayInputStream( new byte[]{1, 2, 3} );
+            }
+        };
+
+        final HttpRequest.BodyPublisher publisher = HttpRequestFactory.byteSourceBodyPublisher( unknownSize );
+
+        assertEquals( -1, publisher.contentLength() );
+        assertArrayEquals( new byte[]{1, 2, 3}, publish( publisher ) );
+    }
+
+    private static byte[] publish( final HttpRequest.BodyPublisher publisher )
+        throws Exception
+    {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final CompletableFuture<byte[]> result = new CompletableFuture<>();
+        publisher.subscribe( new Flow.Subscriber<>()
+        {
+            @Override
+            public void onSubscribe( final Flow.Subscription subscription )
+            {
+                subscription.request( Long.MAX_VALUE );
+            }
+
+            @Override
+            public void onNext( final ByteBuffer item )
+            {
+                final byte[] bytes = new byte[item.remaining()];
+                item.get( bytes );
+                out.writeBytes( bytes );
+            }
+
+            @Override
+            public void onError( final Throwable throwable )
+            {
+                result.completeExceptionally( throwable );
+            }
+
+            @Override
+            public void onComplete()
+            {
+                result.complete( out.toByteArray() );
+            }
+        } );
+        return result.get( 10, TimeUnit.SECONDS );
+    }
+}
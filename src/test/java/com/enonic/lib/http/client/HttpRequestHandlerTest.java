@@ -1,8 +1,16 @@
 package com.enonic.lib.http.client;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
 
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
@@ -10,20 +18,25 @@ import org.junit.jupiter.api.Timeout;
 import org.mockito.Mockito;
 
 import com.google.common.base.Charsets;
+import com.google.common.hash.Hashing;
 import com.google.common.io.ByteSource;
 
+import okhttp3.mockwebserver.Dispatcher;
 import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.MockWebServer;
 import okhttp3.mockwebserver.RecordedRequest;
 import okhttp3.mockwebserver.SocketPolicy;
 import okio.Buffer;
 
+import io.airlift.compress.zstd.ZstdInputStream;
+
 import com.enonic.xp.testing.ScriptTestSupport;
 import com.enonic.xp.trace.Trace;
 import com.enonic.xp.trace.TraceManager;
 
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class HttpRequestHandlerTest
@@ -31,6 +44,8 @@ public class HttpRequestHandlerTest
 {
     protected MockWebServer server;
 
+    private final AtomicInteger unknownSizeStreamOpens = new AtomicInteger();
+
     @Override
     public void initialize()
         throws Exception
@@ -240,6 +255,32 @@ public class HttpRequestHandlerTest
         assertEquals( "GET", request.getMethod() );
     }
 
+    @Test
+    @Timeout( 20 )
+    public void testTotalTimeout()
+        throws Exception
+    {
+        // 10 bytes every 200 ms: each read is well within readTimeout, the whole body takes 10 s
+        final MockResponse response = addResponse( "x".repeat( 500 ) );
+        response.throttleBody( 10, 200, TimeUnit.MILLISECONDS );
+
+        runFunction( "/lib/test/request-test.js", "getWithTotalTimeout", getServerHost() );
+
+        final RecordedRequest request = takeRequest();
+        assertEquals( "GET", request.getMethod() );
+    }
+
+    @Test
+    @Timeout( 20 )
+    public void testHeadersTimeout()
+        throws Exception
+    {
+        final MockResponse response = addResponse( "GET request" );
+        response.setHeadersDelay( 5, TimeUnit.SECONDS );
+
+        runFunction( "/lib/test/request-test.js", "getWithHeadersTimeout", getServerHost() );
+    }
+
     @Test
     @Timeout( 20 )
     public void testConnectTimeout()
@@ -312,6 +353,60 @@ public class HttpRequestHandlerTest
         }
     }
 
+    @Test
+    @Timeout( 20 )
+    public void testStreamBodyMode()
+        throws Exception
+    {
+        final MockResponse response = addResponse( "GET request streamed" );
+        response.throttleBody( 4, 100, TimeUnit.MILLISECONDS );
+
+        runFunction( "/lib/test/request-test.js", "streamBodyMode", getServerHost() );
+
+        final RecordedRequest request = takeRequest();
+        assertEquals( "GET", request.getMethod() );
+    }
+
+    @Test
+    public void testBodyModes()
+        throws Exception
+    {
+        addResponse( "ignored" );
+        addResponse( "{\"a\":1}".getBytes( Charsets.UTF_8 ), "application/json" );
+        addResponse( "binary".getBytes( Charsets.UTF_8 ), "application/octet-stream" );
+
+        runFunction( "/lib/test/request-test.js", "bodyModes", getServerHost() );
+    }
+
+    @Test
+    public void testJsonBodyMode()
+        throws Exception
+    {
+        addResponse( "{\"a\":1,\"b\":[true,null,\"c\"],\"d\":{\"e\":2.5}}".getBytes( Charsets.UTF_8 ), "application/json" );
+
+        runFunction( "/lib/test/request-test.js", "jsonBodyMode", getServerHost() );
+    }
+
+    @Test
+    public void testJsonBodyModeMalformed()
+        throws Exception
+    {
+        addResponse( "{\"a\":01}".getBytes( Charsets.UTF_8 ), "application/json" );
+
+        runFunction( "/lib/test/request-test.js", "jsonBodyModeMalformed", getServerHost() );
+
+        // parsed after the exchange completed, still reported on it
+        final ClientMetrics.Destination destination =
+            ClientMetrics.find( HttpClientFactory.keyForRequest( URI.create( "http://" + getServerHost() + "/my/url" ), null ) );
+        assertEquals( 1, destination.getErrors() );
+    }
+
+    public String readStream( final ByteSource byteSource )
+        throws IOException
+    {
+        return byteSource.asCharSource( Charsets.UTF_8 ).read();
+    }
+
     public String getServerHost()
     {
         return server.getHostName() + ":" + server.getPort();
@@ -322,6 +417,21 @@ public class HttpRequestHandlerTest
         return ByteSource.wrap( "image_data".getBytes() );
     }
 
+    public ByteSource getUnknownSizeStream()
+    {
+        final ByteSource source = ByteSource.wrap( "unknown_size_data".getBytes() );
+        return new ByteSource()
+        {
+            @Override
+            public InputStream openStream()
+                throws IOException
+            {
+                unknownSizeStreamOpens.incrementAndGet();
+                return source.openStream();
+            }
+        };
+    }
+
     @Test
     public void testExample()
         throws Exception
@@ -340,6 +450,331 @@ public class HttpRequestHandlerTest
         assertTrue( request.getHeader( "content-type" ).startsWith( "multipart/mixed;" ) );
     }
 
+    @Test
+    public void testMultipartKnownLength()
+        throws Exception
+    {
+        addResponse( "POST request" );
+        runFunction( "/lib/test/request-test.js", "multipartKnownLength", getServerHost() );
+
+        final RecordedRequest request = takeRequest();
+        assertNull( request.getHeader( "transfer-encoding" ) );
+        assertEquals( Long.toString( request.getBodySize() ), request.getHeader( "content-length" ) );
+        assertTrue( request.getBody().readString( Charsets.UTF_8 ).contains( "image_data" ) );
+    }
+
+    @Test
+    public void testMultipartContentTypeCounted()
+        throws Exception
+    {
+        addResponse( "POST request" );
+        runFunction( "/lib/test/request-test.js", "multipartKnownLength", getServerHost() );
+
+        final RecordedRequest request = takeRequest();
+        // the body publisher counting the bytes sent keeps the media type Methanol sets the Content-Type from
+        final String contentType = request.getHeader( "content-type" );
+        assertTrue( contentType.startsWith( "multipart/form-data; boundary=" ), contentType );
+        final String boundary = contentType.substring( contentType.indexOf( "boundary=" ) + "boundary=".length() );
+        assertTrue( request.getBody().readString( Charsets.UTF_8 ).startsWith( "--" + boundary + "\r\n" ) );
+
+        final ClientMetrics.Destination destination =
+            ClientMetrics.find( HttpClientFactory.keyForRequest( URI.create( "http://" + getServerHost() + "/upload" ), null ) );
+        assertEquals( request.getBodySize(), destination.getBytesOut() );
+    }
+
+    @Test
+    public void testMultipartStreamedKnownLength()
+        throws Exception
+    {
+        addResponse( "streamed_data" );
+        addResponse( "POST request" );
+        runFunction( "/lib/test/request-test.js", "multipartStreamedKnownLength", getServerHost() );
+
+        takeRequest();
+        final RecordedRequest request = takeRequest();
+        // the size of the streamed response body is known from its Content-Length, without reading it
+        assertNull( request.getHeader( "transfer-encoding" ) );
+        assertEquals( Long.toString( request.getBodySize() ), request.getHeader( "content-length" ) );
+        assertTrue( request.getBody().readString( Charsets.UTF_8 ).contains( "streamed_data" ) );
+    }
+
+    @Test
+    public void testMultipartUnknownLength()
+        throws Exception
+    {
+        addResponse( "POST request" );
+        runFunction( "/lib/test/request-test.js", "multipartUnknownLength", getServerHost() );
+
+        final RecordedRequest request = takeRequest();
+        assertEquals( "chunked", request.getHeader( "transfer-encoding" ) );
+        assertNull( request.getHeader( "content-length" ) );
+        assertTrue( request.getBody().readString( Charsets.UTF_8 ).contains( "unknown_size_data" ) );
+        // the stream is not read once to count its size and again to send it
+        assertEquals( 1, unknownSizeStreamOpens.get() );
+    }
+
+    @Test
+    public void testCompressBody()
+        throws Exception
+    {
+        addResponse( "gzip" );
+        addResponse( "deflate" );
+        addResponse( "zstd" );
+        addResponse( "small" );
+        final String body = "{\"items\":[" + "{\"id\":1,\"name\":\"item\"},".repeat( 200 ) + "{}]}";
+
+        runFunction( "/lib/test/request-test.js", "compressBody", getServerHost(), body );
+
+        final RecordedRequest gzip = takeRequest();
+        assertEquals( "gzip", gzip.getHeader( "content-encoding" ) );
+        assertTrue( gzip.getBodySize() < body.length() / 5 );
+        assertEquals( body, new String( new GZIPInputStream( gzip.getBody().inputStream() ).readAllBytes(), Charsets.UTF_8 ) );
+
+        final RecordedRequest deflate = takeRequest();
+        assertEquals( "deflate", deflate.getHeader( "content-encoding" ) );
+        assertEquals( body, new String( new InflaterInputStream( deflate.getBody().inputStream() ).readAllBytes(), Charsets.UTF_8 ) );
+
+        final RecordedRequest zstd = takeRequest();
+        assertEquals( "zstd", zstd.getHeader( "content-encoding" ) );
+        assertEquals( body, new String( new ZstdInputStream( zstd.getBody().inputStream() ).readAllBytes(), Charsets.UTF_8 ) );
+
+        final RecordedRequest small = takeRequest();
+        assertNull( small.getHeader( "content-encoding" ) );
+        assertEquals( "small", small.getBody().readString( Charsets.UTF_8 ) );
+    }
+
+    @Test
+    public void testCompressMultipartBody()
+        throws Exception
+    {
+        addResponse( "POST request" );
+        final String text = "multipart text ".repeat( 200 );
+
+        runFunction( "/lib/test/request-test.js", "compressMultipartBody", getServerHost(), text );
+
+        final RecordedRequest request = takeRequest();
+        assertEquals( "gzip", request.getHeader( "content-encoding" ) );
+        final String contentType = request.getHeader( "content-type" );
+        assertTrue( contentType.startsWith( "multipart/form-data; boundary=" ), contentType );
+        final String boundary = contentType.substring( contentType.indexOf( "boundary=" ) + "boundary=".length() );
+        final String body = new String( new GZIPInputStream( request.getBody().inputStream() ).readAllBytes(), Charsets.UTF_8 );
+        assertTrue( body.startsWith( "--" + boundary + "\r\n" ), body );
+        assertTrue( body.contains( text ) );
+        assertTrue( body.endsWith( "--" + boundary + "--\r\n" ) );
+    }
+
+    @Test
+    public void testDecodeResponse()
+        throws Exception
+    {
+        final Buffer gzipped = new Buffer();
+        try (GZIPOutputStream os = new GZIPOutputStream( gzipped.outputStream() ))
+        {
+            os.write( "decoded body".getBytes( Charsets.UTF_8 ) );
+        }
+        final MockResponse response = new MockResponse();
+        response.setBody( gzipped );
+        response.setHeader( "content-type", "text/plain" );
+        response.setHeader( "content-encoding", "gzip" );
+        this.server.enqueue( response );
+
+        runFunction( "/lib/test/request-test.js", "decodeResponse", getServerHost() );
+
+        final RecordedRequest request = takeRequest();
+        assertEquals( ContentDecoders.acceptEncoding(), request.getHeader( "accept-encoding" ) );
+    }
+
+    @Test
+    public void testDownloadToFile()
+        throws Exception
+    {
+        addResponse( "downloaded content" );
+        final Path file = Files.createTempFile( "xphttp-download", ".tmp" );
+        try
+        {
+            final String sha256 = Hashing.sha256().hashString( "downloaded content", Charsets.UTF_8 ).toString();
+
+            runFunction( "/lib/test/request-test.js", "downloadToFile", getServerHost(), file.toString(), sha256 );
+
+            assertEquals( "downloaded content", Files.readString( file ) );
+        }
+        finally
+        {
+            Files.deleteIfExists( file );
+        }
+    }
+
+    @Test
+    public void testDownloadToFunction()
+        throws Exception
+    {
+        addResponse( "downloaded content" );
+        final MockResponse notFound = addResponse( "not found" );
+        notFound.setResponseCode( 404 );
+
+        @SuppressWarnings("deprecation")
+        final String md5 = Hashing.md5().hashString( "downloaded content", Charsets.UTF_8 ).toString();
+
+        runFunction( "/lib/test/request-test.js", "downloadToFunction", getServerHost(), md5 );
+    }
+
+    @Test
+    public void testDownloadSegments()
+        throws Exception
+    {
+        final byte[] content = new byte[(int) ( 2 * RangeDownload.MIN_SEGMENT_SIZE + 5 )];
+        ThreadLocalRandom.current().nextBytes( content );
+        this.server.setDispatcher( new Dispatcher()
+        {
+            @Override
+            public MockResponse dispatch( final RecordedRequest request )
+            {
+                final MockResponse response = new MockResponse();
+                response.setHeader( "Accept-Ranges", "bytes" );
+                response.setHeader( "ETag", "\"v1\"" );
+                if ( "HEAD".equals( request.getMethod() ) )
+                {
+                    return response.setHeader( "Content-Length", content.length );
+                }
+                final String[] range = request.getHeader( "Range" ).substring( "bytes=".length() ).split( "-" );
+                final int start = Integer.parseInt( range[0] );
+                final int end = Integer.parseInt( range[1] );
+                return response.setResponseCode( 206 )
+                    .setHeader( "Content-Range", "bytes " + start + "-" + end + "/" + content.length )
+                    .setBody( new Buffer().write( content, start, end - start + 1 ) );
+            }
+        } );
+
+        final Path file = Files.createTempFile( "xphttp-download", ".tmp" );
+        try
+        {
+            final String sha256 = Hashing.sha256().hashBytes( content ).toString();
+
+            runFunction( "/lib/test/request-test.js", "downloadSegments", getServerHost(), file.toString(), sha256, content.length );
+
+            assertArrayEquals( content, Files.readAllBytes( file ) );
+            assertEquals( "HEAD", takeRequest().getMethod() );
+            for ( int i = 0; i < 2; i++ )
+            {
+                final RecordedRequest request = takeRequest();
+                assertEquals( "\"v1\"", request.getHeader( "If-Range" ) );
+                assertEquals( "identity", request.getHeader( "Accept-Encoding" ) );
+            }
+        }
+        finally
+        {
+            Files.deleteIfExists( file );
+        }
+    }
+
+    @Test
+    public void testMetrics()
+        throws Exception
+    {
+        addResponse( "POST request" );
+        final MockResponse notFound = addResponse( "not found" );
+        notFound.setResponseCode( 404 );
+
+        runFunction( "/lib/test/request-test.js", "metrics", getServerHost(), "C:H:" + getServerHost() );
+    }
+
+    @Test
+    public void testTimings()
+        throws Exception
+    {
+        addResponse( "GET request" );
+        addResponse( "GET request" );
+
+        runFunction( "/lib/test/request-test.js", "timings", getServerHost() );
+    }
+
+    @Test
+    public void testCachedClients()
+        throws Exception
+    {
+        addResponse( "GET request" );
+
+        runFunction( "/lib/test/request-test.js", "cachedClients", getServerHost(), "C:H:" + getServerHost() );
+    }
+
+    @Test
+    public void testExampleProxyResponse()
+        throws Exception
+    {
+        final MockResponse response = new MockResponse();
+        response.setBody( "logo" );
+        response.setHeader( "content-type", "image/png" );
+        response.setHeader( "Connection", "keep-alive, X-Upstream-Hop" );
+        response.setHeader( "X-Upstream-Hop", "dropped" );
+        response.setHeader( "X-Upstream", "kept" );
+        this.server.enqueue( response );
+
+        runScript( "/lib/examples/http-client/proxy-response.js" );
+
+        final RecordedRequest request = takeRequest();
+        assertEquals( "/assets/logo.png", request.getPath() );
+    }
+
+    @Test
+    public void testExampleStream()
+        throws Exception
+    {
+        final MockResponse response = new MockResponse();
+        response.setBody( "retry: 1000\n\n: keep-alive\ndata: first\n\ndata: second\r\ndata: line\r\n\r\nevent: done\ndata: \n\ndata: never\n\n" );
+        response.setHeader( "content-type", "text/event-stream" );
+        this.server.enqueue( response );
+
+        runScript( "/lib/examples/http-client/stream.js" );
+
+        final RecordedRequest request = takeRequest();
+        assertEquals( "/events", request.getPath() );
+        assertEquals( "text/event-stream", request.getHeader( "Accept" ) );
+    }
+
+    @Test
+    @Timeout( 20 )
+    public void testStreamNdjson()
+        throws Exception
+    {
+        final MockResponse response = addResponse( "{\"a\":1}\n\n{\"b\":[true,\"c\"]}".getBytes( Charsets.UTF_8 ), "application/x-ndjson" );
+        response.throttleBody( 5, 50, TimeUnit.MILLISECONDS );
+
+        runFunction( "/lib/test/request-test.js", "streamNdjson", getServerHost() );
+    }
+
+    @Test
+    @Timeout( 20 )
+    public void testStreamStop()
+        throws Exception
+    {
+        final MockResponse response = addResponse( "line 1\nline 2\nline 3\n" + "x".repeat( 100_000 ) );
+        response.throttleBody( 7, 100, TimeUnit.MILLISECONDS );
+
+        runFunction( "/lib/test/request-test.js", "streamStop", getServerHost() );
+    }
+
+    @Test
+    @Timeout( 20 )
+    public void testMaxResponseBytes()
+        throws Exception
+    {
+        addResponse( "GET request" );
+        // Content-Length is known, rejected before reading the body
+        addResponse( "GET request" );
+        // chunked, rejected while reading
+        for ( int i = 0; i < 2; i++ )
+        {
+            final MockResponse response = new MockResponse();
+            response.setChunkedBody( "GET request", 4 );
+            response.setHeader( "content-type", "text/plain" );
+            this.server.enqueue( response );
+        }
+
+        runFunction( "/lib/test/request-test.js", "maxResponseBytes", getServerHost() );
+
+        assertEquals( 4, this.server.getRequestCount() );
+    }
+
     @Test
     public void testBasicAuthentication()
         throws Exception
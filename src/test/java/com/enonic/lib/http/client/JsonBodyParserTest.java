@@ -0,0 +1,94 @@
+package com.enonic.lib.http.client;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.mockito.Mockito;
+
+import com.enonic.xp.script.serializer.MapGenerator;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class JsonBodyParserTest
+{
+    @Test
+    public void parseObject()
+        throws Exception
+    {
+        final MapGenerator gen = Mockito.mock( MapGenerator.class );
+
+        JsonBodyParser.parse( new StringReader( "{\"a\": 1, \"b\": [2.5, \"x\\u0041\\n\", null], \"c\": {\"d\": true}}" ), gen, "body" );
+
+        final InOrder inOrder = Mockito.inOrder( gen );
+        inOrder.verify( gen ).map( "body" );
+        inOrder.verify( gen ).value( "a", 1 );
+        inOrder.verify( gen ).array( "b" );
+        inOrder.verify( gen ).value( 2.5 );
+        inOrder.verify( gen ).value( "xA\n" );
+        inOrder.verify( gen ).value( null );
+        inOrder.verify( gen ).end();
+        inOrder.verify( gen ).map( "c" );
+        inOrder.verify( gen ).value( "d", true );
+        inOrder.verify( gen, Mockito.times( 2 ) ).end();
+        inOrder.verifyNoMoreInteractions();
+    }
+
+    @Test
+    public void parseScalar()
+        throws Exception
+    {
+        final MapGenerator gen = Mockito.mock( MapGenerator.class );
+
+        JsonBodyParser.parse( new StringReader( " 12345678901 " ), gen, "body" );
+
+        Mockito.verify( gen ).value( "body", 1.2345678901E10 );
+        Mockito.verifyNoMoreInteractions( gen );
+    }
+
+    @Test
+    public void parseNumbers()
+        throws Exception
+    {
+        final MapGenerator gen = Mockito.mock( MapGenerator.class );
+
+        JsonBodyParser.parse( new StringReader( "[0, -0, -12, 2147483648, 1.5e2, 1E-2, 0.25, -0.0]" ), gen, "body" );
+
+        final InOrder inOrder = Mockito.inOrder( gen );
+        inOrder.verify( gen ).array( "body" );
+        inOrder.verify( gen ).value( 0 );
+        inOrder.verify( gen ).value( -0.0 );
+        inOrder.verify( gen ).value( -12 );
+        inOrder.verify( gen ).value( 2147483648.0 );
+        inOrder.verify( gen ).value( 150.0 );
+        inOrder.verify( gen ).value( 0.01 );
+        inOrder.verify( gen ).value( 0.25 );
+        inOrder.verify( gen ).value( -0.0 );
+        inOrder.verify( gen ).end();
+        inOrder.verifyNoMoreInteractions();
+    }
+
+    @Test
+    public void parseInvalidNumbers()
+    {
+        final MapGenerator gen = Mockito.mock( MapGenerator.class );
+
+        for ( String text : new String[]{"01", "-01", "00", "-", "1.", ".5", "-.5", "1e", "1e+", "1.e2", "+1", "1-2", "0x10"} )
+        {
+            assertThrows( IOException.class, () -> JsonBodyParser.parse( new StringReader( text ), gen, "body" ), text );
+        }
+    }
+
+    @Test
+    public void parseInvalid()
+    {
+        final MapGenerator gen = Mockito.mock( MapGenerator.class );
+
+        assertThrows( IOException.class, () -> JsonBodyParser.parse( new StringReader( "{\"a\":}" ), gen, "body" ) );
+        assertThrows( IOException.class, () -> JsonBodyParser.parse( new StringReader( "[1,]" ), gen, "body" ) );
+        assertThrows( IOException.class, () -> JsonBodyParser.parse( new StringReader( "{} x" ), gen, "body" ) );
+        assertThrows( IOException.class, () -> JsonBodyParser.parse( new StringReader( "\"open" ), gen, "body" ) );
+        assertThrows( IOException.class, () -> JsonBodyParser.parse( new StringReader( "[".repeat( 2000 ) ), gen, "body" ) );
+    }
+}
@@ -0,0 +1,253 @@
+package com.enonic.lib.http.client;
+
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import com.google.common.io.ByteSource;
+
+import okhttp3.Protocol;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.tls.HandshakeCertificates;
+import okhttp3.tls.HeldCertificate;
+import okio.Buffer;
+
+/**
+ * Drives {@link HttpRequestHandler#request()} against an in-process MockWebServer, over HTTP/1.1 cleartext, HTTP/1.1 with TLS
+ * and HTTP/2 with TLS, with small, large and spilled response bodies, at each configured concurrency.
+ * Each scenario reports throughput, latency percentiles, allocation rate and peak thread count, and the whole run is written as JSON.
+ * Run with {@code ./gradlew loadBenchmark -PloadConcurrency=1,8,64,512 -PloadSeconds=10}.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class LoadBenchmarkTest
+{
+    private static final int[] CONCURRENCY =
+        Arrays.stream( System.getProperty( "load.concurrency", "1,8,64,512" ).split( "," ) ).mapToInt( Integer::parseInt ).toArray();
+
+    private static final long SECONDS = Long.getLong( "load.seconds", 10 );
+
+    private static final long WARMUP_SECONDS = Long.getLong( "load.warmupSeconds", 3 );
+
+    private static final String REPORT = System.getProperty( "load.report", "build/reports/load-benchmark.json" );
+
+    private static final String[] PROTOCOLS = {"http1", "http1-tls", "http2-tls"};
+
+    private static final String[] BODIES = {"small", "large", "spilled"};
+
+    private MockWebServer server;
+
+    private ExecutorService workers;
+
+    @AfterEach
+    public final void shutdown()
+        throws Exception
+    {
+        HttpClientFactory.clearCache();
+        if ( workers != null )
+        {
+            workers.shutdownNow();
+        }
+        if ( server != null )
+        {
+            server.shutdown();
+        }
+    }
+
+    @Test
+    public void benchmark()
+        throws Exception
+    {
+        final HeldCertificate root = new HeldCertificate.Builder().commonName( "loadCA" ).certificateAuthority( 0 ).build();
+        final HeldCertificate serverCertificate = new HeldCertificate.Builder().commonName( "server" )
+            .addSubjectAlternativeName( InetAddress.getByName( "localhost" ).getCanonicalHostName() )
+            .signedBy( root )
+            .build();
+        final HandshakeCertificates serverCertificates = new HandshakeCertificates.Builder().heldCertificate( serverCertificate ).build();
+        final ByteSource trusted = ByteSource.wrap( root.certificatePem().getBytes( StandardCharsets.ISO_8859_1 ) );
+
+        final List<String> results = new ArrayList<>();
+        for ( String protocol : PROTOCOLS )
+        {
+            server = new MockWebServer();
+            server.setDispatcher( new BodyDispatcher() );
+            if ( protocol.endsWith( "-tls" ) )
+            {
+                server.useHttps( serverCertificates.sslSocketFactory(), false );
+                server.setProtocols( protocol.startsWith( "http2" ) ? List.of( Protocol.HTTP_2, Protocol.HTTP_1_1 )
+                                         : List.of( Protocol.HTTP_1_1 ) );
+            }
+            server.start();
+
+            for ( String body : BODIES )
+            {
+                for ( int concurrency : CONCURRENCY )
+                {
+                    final Scenario scenario = new Scenario( protocol, body, concurrency, trusted );
+                    scenario.run( WARMUP_SECONDS );
+                    results.add( scenario.run( SECONDS ) );
+                }
+            }
+
+            HttpClientFactory.clearCache();
+            server.shutdown();
+            server = null;
+        }
+
+        final Path report = Path.of( REPORT );
+        Files.createDirectories( report.toAbsolutePath().getParent() );
+        Files.writeString( report, "{\"javaVersion\":\"" + System.getProperty( "java.version" ) + "\",\"cpus\":" +
+            Runtime.getRuntime().availableProcessors() + ",\"seconds\":" + SECONDS + ",\"results\":[\n" + String.join( ",\n", results ) +
+            "\n]}\n" );
+    }
+
+    private static int bodySize( final String body )
+    {
+        switch ( body )
+        {
+            case "small":
+                return 1024;
+            case "large":
+                return 1024 * 1024;
+            default:
+                return HttpRequestHandler.MAX_IN_MEMORY_BODY_STREAM_BYTES + 1024 * 1024;
+        }
+    }
+
+    private static final class BodyDispatcher
+        extends Dispatcher
+    {
+        private final Buffer[] bodies = new Buffer[BODIES.length];
+
+        BodyDispatcher()
+        {
+            for ( int i = 0; i < BODIES.length; i++ )
+            {
+                bodies[i] = new Buffer().write( new byte[bodySize( BODIES[i] )] );
+            }
+        }
+
+        @Override
+        public MockResponse dispatch( final RecordedRequest request )
+        {
+            final int index = Arrays.asList( BODIES ).indexOf( request.getPath().substring( 1 ) );
+            return new MockResponse().setHeader( "content-type", "application/octet-stream" ).setBody( bodies[index].clone() );
+        }
+    }
+
+    private final class Scenario
+    {
+        private final String protocol;
+
+        private final String body;
+
+        private final int concurrency;
+
+        private final ByteSource trusted;
+
+        Scenario( final String protocol, final String body, final int concurrency, final ByteSource trusted )
+        {
+            this.protocol = protocol;
+            this.body = body;
+            this.concurrency = concurrency;
+            this.trusted = trusted;
+        }
+
+        String run( final long seconds )
+            throws Exception
+        {
+            final String scheme = protocol.endsWith( "-tls" ) ? "https://" : "http://";
+            final String url = scheme + server.getHostName() + ":" + server.getPort() + "/" + body;
+            final Recorder latency = new Recorder( 3 );
+            final LongAdder errors = new LongAdder();
+            final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+            workers = Executors.newFixedThreadPool( concurrency );
+            final CountDownLatch done = new CountDownLatch( concurrency );
+            threads.resetPeakThreadCount();
+            final long allocatedBefore = threads.getTotalThreadAllocatedBytes();
+            final long start = System.nanoTime();
+            final long deadline = start + TimeUnit.SECONDS.toNanos( seconds );
+            for ( int i = 0; i < concurrency; i++ )
+            {
+                workers.execute( () -> {
+                    try
+                    {
+                        while ( System.nanoTime() < deadline )
+                        {
+                            final long requestStart = System.nanoTime();
+                            if ( send( url ) )
+                            {
+                                latency.recordValue( TimeUnit.NANOSECONDS.toMicros( System.nanoTime() - requestStart ) );
+                            }
+                            else
+                            {
+                                errors.increment();
+                            }
+                        }
+                    }
+                    finally
+                    {
+                        done.countDown();
+                    }
+                } );
+            }
+            done.await();
+            final double elapsed = ( System.nanoTime() - start ) / 1e9;
+            final long allocated = threads.getTotalThreadAllocatedBytes() - allocatedBefore;
+            final int peakThreads = threads.getPeakThreadCount();
+            workers.shutdown();
+            workers = null;
+
+            final Histogram histogram = latency.getIntervalHistogram();
+            return String.format( Locale.ROOT, "{\"protocol\":\"%s\",\"body\":\"%s\",\"bodyBytes\":%d,\"concurrency\":%d," +
+                                      "\"requests\":%d,\"errors\":%d,\"throughput\":%.1f," +
+                                      "\"latencyMs\":{\"p50\":%.3f,\"p90\":%.3f,\"p99\":%.3f,\"p999\":%.3f,\"max\":%.3f}," +
+                                      "\"allocatedMBPerSecond\":%.1f,\"peakThreads\":%d}", protocol, body, bodySize( body ), concurrency,
+                                  histogram.getTotalCount(), errors.sum(), histogram.getTotalCount() / elapsed,
+                                  histogram.getValueAtPercentile( 50 ) / 1000.0, histogram.getValueAtPercentile( 90 ) / 1000.0,
+                                  histogram.getValueAtPercentile( 99 ) / 1000.0, histogram.getValueAtPercentile( 99.9 ) / 1000.0,
+                                  histogram.getMaxValue() / 1000.0, allocated / elapsed / ( 1024 * 1024 ), peakThreads );
+        }
+
+        private boolean send( final String url )
+        {
+            final HttpRequestHandler handler = new HttpRequestHandler();
+            handler.setUrl( url );
+            handler.setMethod( "GET" );
+            handler.setBodyMode( "bytes" );
+            handler.setDisableHttp2( !protocol.startsWith( "http2" ) );
+            if ( protocol.endsWith( "-tls" ) )
+            {
+                handler.setCertificates( trusted );
+            }
+            try
+            {
+                return handler.request().status() == 200;
+            }
+            catch ( Exception e )
+            {
+                return false;
+            }
+        }
+    }
+}
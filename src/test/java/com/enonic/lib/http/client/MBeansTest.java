@@ -0,0 +1,59 @@
+package com.enonic.lib.http.client;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MBeansTest
+{
+    @Test
+    public void testNameScopedToApp()
+        throws Exception
+    {
+        final ObjectName name = new ObjectName( MBeans.name( "Destination", "https://host:443" ) );
+
+        assertEquals( MBeans.DOMAIN, name.getDomain() );
+        assertEquals( "Destination", name.getKeyProperty( "type" ) );
+        assertEquals( MBeans.APP, ObjectName.unquote( name.getKeyProperty( "app" ) ) );
+        assertEquals( "https://host:443", ObjectName.unquote( name.getKeyProperty( "name" ) ) );
+
+        final ObjectName cache = new ObjectName( ClientCache.OBJECT_NAME );
+        assertEquals( MBeans.APP, ObjectName.unquote( cache.getKeyProperty( "app" ) ) );
+    }
+
+    @Test
+    public void testUnregisterAll()
+        throws Exception
+    {
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        final ClientMetrics.Destination destination = ClientMetrics.destination( "https://unregister-all:443" );
+        final ObjectName name = new ObjectName( destination.objectName() );
+        final ObjectName foreign =
+            new ObjectName( MBeans.DOMAIN + ":type=Destination,app=\"other.app\",name=\"https://unregister-all:443\"" );
+        server.registerMBean( new ClientMetrics.Destination( "https://unregister-all:443" ), foreign );
+        try
+        {
+            assertTrue( server.isRegistered( name ) );
+
+            MBeans.unregisterAll();
+
+            assertFalse( server.isRegistered( name ) );
+            // registrations of other apps are left alone
+            assertTrue( server.isRegistered( foreign ) );
+        }
+        finally
+        {
+            server.unregisterMBean( foreign );
+            // restores the registrations other tests rely on
+            MBeans.register( new ClientCache(), ClientCache.OBJECT_NAME );
+            ClientMetrics.destinations().forEach( d -> MBeans.register( d, d.objectName() ) );
+        }
+    }
+}
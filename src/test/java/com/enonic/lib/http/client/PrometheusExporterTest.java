@@ -0,0 +1,46 @@
+package com.enonic.lib.http.client;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PrometheusExporterTest
+{
+    @Test
+    public void testExport()
+    {
+        final ClientMetrics.Destination destination = ClientMetrics.destination( "C:H:prometheus.example.com:80" );
+        destination.started();
+        destination.exchanged( 200, TimeUnit.MILLISECONDS.toNanos( 20 ) );
+        destination.completed();
+        destination.started();
+        destination.exchanged( 503, TimeUnit.MILLISECONDS.toNanos( 300 ) );
+        destination.completed();
+        destination.spilled();
+        destination.spilledBytes( 1024 );
+
+        final String text = PrometheusExporter.export();
+        final String labels = "{destination=\"C:H:prometheus.example.com:80\"";
+
+        assertTrue( text.contains( "# TYPE lib_httpclient_cache_clients gauge\n" ), text );
+        assertTrue( text.contains( "# TYPE lib_httpclient_latency_seconds histogram\n" ), text );
+        assertTrue( text.contains( "lib_httpclient_requests_total" + labels + "} 2\n" ), text );
+        assertTrue( text.contains( "lib_httpclient_in_flight" + labels + "} 0\n" ), text );
+        assertTrue( text.contains( "lib_httpclient_responses_total" + labels + ",status_class=\"5xx\"} 1\n" ), text );
+        assertTrue( text.contains( "lib_httpclient_spilled_bytes_total" + labels + "} 1024\n" ), text );
+        assertTrue( text.contains( "lib_httpclient_latency_seconds_bucket" + labels + ",le=\"0.01\"} 0\n" ), text );
+        assertTrue( text.contains( "lib_httpclient_latency_seconds_bucket" + labels + ",le=\"0.025\"} 1\n" ), text );
+        assertTrue( text.contains( "lib_httpclient_latency_seconds_bucket" + labels + ",le=\"0.5\"} 2\n" ), text );
+        assertTrue( text.contains( "lib_httpclient_latency_seconds_bucket" + labels + ",le=\"+Inf\"} 2\n" ), text );
+        assertTrue( text.contains( "lib_httpclient_latency_seconds_count" + labels + "} 2\n" ), text );
+    }
+
+    @Test
+    public void testEscape()
+    {
+        assertEquals( "a\\\\b\\\"c\\n", PrometheusExporter.escape( "a\\b\"c\n" ) );
+    }
+}
@@ -0,0 +1,297 @@
+package com.enonic.lib.http.client;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RangeDownloadTest
+{
+    private static final Pattern RANGE = Pattern.compile( "bytes=(\\d+)-(\\d+)" );
+
+    private static final String ETAG = "\"v1\"";
+
+    private final byte[] content = new byte[(int) ( 3 * RangeDownload.MIN_SEGMENT_SIZE + 123 )];
+
+    private final Queue<String> ranges = new ConcurrentLinkedQueue<>();
+
+    private final AtomicBoolean dropOnce = new AtomicBoolean();
+
+    private volatile String etag = ETAG;
+
+    private HttpServer server;
+
+    private HttpClient client;
+
+    private URI uri;
+
+    private Path file;
+
+    @BeforeEach
+    public final void setup()
+        throws Exception
+    {
+        for ( int i = 0; i < content.length; i++ )
+        {
+            content[i] = (byte) ( i * 31 );
+        }
+
+        server = HttpServer.create( new InetSocketAddress( InetAddress.getLoopbackAddress(), 0 ), 0 );
+        server.setExecutor( Executors.newCachedThreadPool() );
+        server.createContext( "/file", this::handle );
+        server.start();
+
+        uri = URI.create( "http://127.0.0.1:" + server.getAddress().getPort() + "/file" );
+        client = HttpClient.newBuilder().version( HttpClient.Version.HTTP_1_1 ).build();
+        file = Files.createTempFile( "xphttp-range", ".tmp" );
+    }
+
+    @AfterEach
+    public final void shutdown()
+        throws Exception
+    {
+        server.stop( 0 );
+        Files.deleteIfExists( file );
+    }
+
+    private void handle( final HttpExchange exchange )
+        throws IOException
+    {
+        final String range = exchange.getRequestHeaders().getFirst( "Range" );
+        final String ifRange = exchange.getRequestHeaders().getFirst( "If-Range" );
+        exchange.getResponseHeaders().set( "Accept-Ranges", "bytes" );
+        exchange.getResponseHeaders().set( "ETag", etag );
+
+        if ( "HEAD".equals( exchange.getRequestMethod() ) )
+        {
+            exchange.getResponseHeaders().set( "Content-Length", Integer.toString( content.length ) );
+            exchange.sendResponseHeaders( 200, -1 );
+            exchange.close();
+            return;
+        }
+
+        ranges.add( range + " " + ifRange );
+        final Matcher matcher = RANGE.matcher( range == null ? "" : range );
+        if ( !matcher.matches() || !etag.equals( ifRange ) )
+        {
+            exchange.sendResponseHeaders( 200, content.length );
+            write( exchange, 0, content.length );
+            return;
+        }
+
+        final int start = Integer.parseInt( matcher.group( 1 ) );
+        final int end = Integer.parseInt( matcher.group( 2 ) );
+        exchange.getResponseHeaders().set( "Content-Range", "bytes " + start + "-" + end + "/" + content.length );
+        exchange.sendResponseHeaders( 206, end - start + 1 );
+        if ( start == 0 && dropOnce.compareAndSet( true, false ) )
+        {
+            // sends half of the range and drops the connection
+            exchange.getResponseBody().write( content, 0, ( end + 1 ) / 2 );
+            exchange.getResponseBody().flush();
+            exchange.close();
+            return;
+        }
+        write( exchange, start, end - start + 1 );
+    }
+
+    private void write( final HttpExchange exchange, final int offset, final int length )
+        throws IOException
+    {
+        try (OutputStream os = exchange.getResponseBody())
+        {
+            os.write( content, offset, length );
+        }
+    }
+
+    private RangeDownload newDownload()
+        throws Exception
+    {
+        final HttpRequest request = HttpRequest.newBuilder( uri ).build();
+        final HttpResponse<Void> probe = client.send( RangeDownload.probeRequest( request ), HttpResponse.BodyHandlers.discarding() );
+        assertTrue( RangeDownload.supportsRanges( probe.statusCode(), probe.headers() ) );
+        return new RangeDownload( request, rangeRequest -> client.send( rangeRequest, HttpResponse.BodyHandlers.ofInputStream() ),
+                                  probe.headers() );
+    }
+
+    @Test
+    public void testSegments()
+        throws Exception
+    {
+        final RangeDownload download = newDownload();
+        assertEquals( content.length, download.size() );
+
+        download.run( file, 8 );
+
+        assertArrayEquals( content, Files.readAllBytes( file ) );
+        assertEquals( 3, ranges.size() );
+        final long segment = content.length / 3;
+        assertTrue( ranges.contains( "bytes=0-" + ( segment - 1 ) + " " + ETAG ) );
+        assertTrue( ranges.contains( "bytes=" + 2 * segment + "-" + ( content.length - 1 ) + " " + ETAG ) );
+    }
+
+    @Test
+    public void testResume()
+        throws Exception
+    {
+        final RangeDownload download = newDownload();
+        dropOnce.set( true );
+
+        download.run( file, 1 );
+
+        assertArrayEquals( content, Files.readAllBytes( file ) );
+        assertEquals( 2, ranges.size() );
+        assertEquals( "bytes=0-" + ( content.length - 1 ) + " " + ETAG, ranges.poll() );
+        final String resumed = ranges.poll();
+        assertFalse( resumed.startsWith( "bytes=0-" ), resumed );
+        assertTrue( resumed.endsWith( "-" + ( content.length - 1 ) + " " + ETAG ), resumed );
+    }
+
+    @Test
+    public void testResourceChanged()
+        throws Exception
+    {
+        final RangeDownload download = newDownload();
+        etag = "\"v2\"";
+
+        final IOException e = assertThrows( IOException.class, () -> download.run( file, 1 ) );
+        assertEquals( "Resource changed during download", e.getMessage() );
+    }
+
+    @Test
+    public void testFailureWaitsForSegments()
+        throws Exception
+    {
+        final HttpRequest request = HttpRequest.newBuilder( uri ).build();
+        final HttpResponse<Void> probe = client.send( RangeDownload.probeRequest( request ), HttpResponse.BodyHandlers.discarding() );
+        final AtomicInteger openBodies = new AtomicInteger();
+        final RangeDownload download = new RangeDownload( request, rangeRequest -> {
+            if ( rangeRequest.headers().firstValue( "Range" ).orElseThrow().startsWith( "bytes=0-" ) )
+            {
+                // fails once the other segments are reading, with a whole response that can't be resumed
+                Thread.sleep( 300 );
+                return client.send( request, HttpResponse.BodyHandlers.ofInputStream() );
+            }
+            return client.send( rangeRequest, responseInfo -> HttpResponse.BodySubscribers.mapping(
+                HttpResponse.BodySubscribers.ofInputStream(), body -> new SlowInputStream( body, openBodies ) ) );
+        }, probe.headers() );
+
+        final IOException e = assertThrows( IOException.class, () -> download.run( file, 3 ) );
+        assertEquals( "Resource changed during download", e.getMessage() );
+        assertEquals( 0, openBodies.get(), "segments still running after the download failed" );
+    }
+
+    @Test
+    public void testSupportsRanges()
+    {
+        final HttpHeaders ranged = HttpHeaders.of( Map.of( "accept-ranges", List.of( "bytes" ), "content-length", List.of( "10" ) ),
+                                                   ( name, value ) -> true );
+        final HttpHeaders none = HttpHeaders.of( Map.of( "accept-ranges", List.of( "none" ), "content-length", List.of( "10" ) ),
+                                                 ( name, value ) -> true );
+        final HttpHeaders unknownLength = HttpHeaders.of( Map.of( "accept-ranges", List.of( "bytes" ) ), ( name, value ) -> true );
+
+        assertTrue( RangeDownload.supportsRanges( 200, ranged ) );
+        assertFalse( RangeDownload.supportsRanges( 404, ranged ) );
+        assertFalse( RangeDownload.supportsRanges( 200, none ) );
+        assertFalse( RangeDownload.supportsRanges( 200, unknownLength ) );
+    }
+
+    @Test
+    public void testValidator()
+    {
+        final HttpHeaders strong = HttpHeaders.of( Map.of( "etag", List.of( "\"a\"" ), "last-modified", List.of( "date" ) ),
+                                                   ( name, value ) -> true );
+        final HttpHeaders weak = HttpHeaders.of( Map.of( "etag", List.of( "W/\"a\"" ), "last-modified", List.of( "date" ) ),
+                                                 ( name, value ) -> true );
+
+        assertEquals( "\"a\"", RangeDownload.validator( strong ) );
+        assertEquals( "date", RangeDownload.validator( weak ) );
+        assertNull( RangeDownload.validator( HttpHeaders.of( Map.of(), ( name, value ) -> true ) ) );
+    }
+
+    @Test
+    public void testSegmentCount()
+    {
+        assertEquals( 1, RangeDownload.segmentCount( 10, 4 ) );
+        assertEquals( 2, RangeDownload.segmentCount( 2 * RangeDownload.MIN_SEGMENT_SIZE, 4 ) );
+        assertEquals( 4, RangeDownload.segmentCount( 100 * RangeDownload.MIN_SEGMENT_SIZE, 4 ) );
+        assertEquals( RangeDownload.MAX_SEGMENTS, RangeDownload.segmentCount( 10_000 * RangeDownload.MIN_SEGMENT_SIZE, 10_000 ) );
+    }
+
+    /**
+     * Reads slowly and takes a while to close, like a segment stuck writing to the file.
+     */
+    private static final class SlowInputStream
+        extends FilterInputStream
+    {
+        private final AtomicInteger open;
+
+        SlowInputStream( final InputStream in, final AtomicInteger open )
+        {
+            super( in );
+            this.open = open;
+            open.incrementAndGet();
+        }
+
+        @Override
+        public int read( final byte[] b, final int off, final int len )
+            throws IOException
+        {
+            try
+            {
+                Thread.sleep( 50 );
+            }
+            catch ( InterruptedException e )
+            {
+                throw new InterruptedIOException();
+            }
+            return super.read( b, off, Math.min( len, 8192 ) );
+        }
+
+        @Override
+        public void close()
+            throws IOException
+        {
+            final long until = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos( 200 );
+            while ( System.nanoTime() < until )
+            {
+                Thread.onSpinWait();
+            }
+            super.close();
+            open.decrementAndGet();
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package com.enonic.lib.http.client;
 
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -71,6 +73,53 @@ public class RefPathByteSourceTest
         assertEquals( 8L, fileByteSource.sizeIfKnown().get().longValue() );
     }
 
+    @Test
+    public void testSlice()
+        throws Throwable
+    {
+        RefPathByteSource fileByteSource = new RefPathByteSource( tempFile );
+        Files.write( tempFile, new byte[]{0, 1, 2, 3, 4, 5} );
+
+        final RefPathByteSource slice = fileByteSource.slice( 1, 4 );
+        assertEquals( 4, slice.size() );
+        assertArrayEquals( new byte[]{1, 2, 3, 4}, slice.read() );
+        assertArrayEquals( new byte[]{2, 3}, slice.slice( 1, 2 ).read() );
+        assertArrayEquals( new byte[]{4, 5}, fileByteSource.slice( 4, 100 ).read() );
+        assertEquals( 0, fileByteSource.slice( 10, 2 ).size() );
+    }
+
+    @Test
+    public void testAsByteBuffer()
+        throws Throwable
+    {
+        RefPathByteSource fileByteSource = new RefPathByteSource( tempFile );
+        Files.write( tempFile, new byte[]{0, 1, 2, 3, 4, 5} );
+
+        final ByteBuffer buffer = fileByteSource.asByteBuffer();
+        assertTrue( buffer.isReadOnly() );
+        assertEquals( 6, buffer.remaining() );
+
+        final ByteBuffer sliceBuffer = fileByteSource.slice( 2, 3 ).asByteBuffer();
+        assertEquals( 3, sliceBuffer.remaining() );
+        assertEquals( 2, sliceBuffer.get() );
+    }
+
+    @Test
+    public void testCopyTo()
+        throws Throwable
+    {
+        RefPathByteSource fileByteSource = new RefPathByteSource( tempFile );
+        Files.write( tempFile, new byte[]{0, 1, 2, 3, 4, 5} );
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals( 6, fileByteSource.copyTo( out ) );
+        assertArrayEquals( new byte[]{0, 1, 2, 3, 4, 5}, out.toByteArray() );
+
+        out.reset();
+        assertEquals( 2, fileByteSource.slice( 3, 2 ).copyTo( out ) );
+        assertArrayEquals( new byte[]{3, 4}, out.toByteArray() );
+    }
+
     @Test
     public void testCleanup()
         throws Exception
@@ -0,0 +1,111 @@
+package com.enonic.lib.http.client;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ResponseSizeLimitTest
+{
+    @Test
+    public void testStreamWithinLimit()
+        throws Exception
+    {
+        try (InputStream is = ResponseSizeLimit.limit( new ByteArrayInputStream( new byte[]{1, 2, 3} ), 3 ))
+        {
+            assertArrayEquals( new byte[]{1, 2, 3}, is.readAllBytes() );
+        }
+    }
+
+    @Test
+    public void testStreamOverLimit()
+    {
+        final CloseTrackingInputStream source = new CloseTrackingInputStream( new byte[]{1, 2, 3, 4} );
+        final InputStream is = ResponseSizeLimit.limit( source, 3 );
+
+        final IOException e = assertThrows( IOException.class, is::readAllBytes );
+        assertEquals( "Response body exceeds maxResponseBytes limit of 3 bytes", e.getMessage() );
+        assertTrue( source.closed );
+    }
+
+    @Test
+    public void testSubscriberWithinLimit()
+        throws Exception
+    {
+        final TestSubscription subscription = new TestSubscription();
+        final HttpResponse.BodySubscriber<byte[]> subscriber = ResponseSizeLimit.limit( HttpResponse.BodySubscribers.ofByteArray(), 3 );
+
+        subscriber.onSubscribe( subscription );
+        subscriber.onNext( List.of( ByteBuffer.wrap( new byte[]{1, 2} ) ) );
+        subscriber.onNext( List.of( ByteBuffer.wrap( new byte[]{3} ) ) );
+        subscriber.onComplete();
+
+        assertArrayEquals( new byte[]{1, 2, 3}, subscriber.getBody().toCompletableFuture().get() );
+        assertFalse( subscription.cancelled );
+    }
+
+    @Test
+    public void testSubscriberOverLimit()
+    {
+        final TestSubscription subscription = new TestSubscription();
+        final HttpResponse.BodySubscriber<byte[]> subscriber = ResponseSizeLimit.limit( HttpResponse.BodySubscribers.ofByteArray(), 3 );
+
+        subscriber.onSubscribe( subscription );
+        subscriber.onNext( List.of( ByteBuffer.wrap( new byte[]{1, 2} ), ByteBuffer.wrap( new byte[]{3, 4} ) ) );
+        subscriber.onComplete();
+
+        assertTrue( subscription.cancelled );
+        final ExecutionException e = assertThrows( ExecutionException.class, () -> subscriber.getBody().toCompletableFuture().get() );
+        assertInstanceOf( IOException.class, e.getCause() );
+        assertEquals( "Response body exceeds maxResponseBytes limit of 3 bytes", e.getCause().getMessage() );
+    }
+
+    private static final class TestSubscription
+        implements Flow.Subscription
+    {
+        boolean cancelled;
+
+        @Override
+        public void request( final long n )
+        {
+        }
+
+        @Override
+        public void cancel()
+        {
+            cancelled = true;
+        }
+    }
+
+    private static final class CloseTrackingInputStream
+        extends ByteArrayInputStream
+    {
+        boolean closed;
+
+        CloseTrackingInputStream( final byte[] buf )
+        {
+            super( buf );
+        }
+
+        @Override
+        public void close()
+            throws IOException
+        {
+            closed = true;
+            super.close();
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.enonic.lib.http.client;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.http.HttpHeaders;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import com.google.common.base.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class StreamingByteSourceTest
+{
+    @Test
+    public void testReadOnce()
+        throws Exception
+    {
+        final StreamingByteSource source = new StreamingByteSource( new ByteArrayInputStream( new byte[]{1, 2, 3} ) );
+
+        assertFalse( source.isEmpty() );
+        assertArrayEquals( new byte[]{1, 2, 3}, source.read() );
+        assertThrows( IOException.class, source::openStream );
+    }
+
+    @Test
+    public void testEmpty()
+        throws Exception
+    {
+        final StreamingByteSource source = new StreamingByteSource( new ByteArrayInputStream( new byte[0] ) );
+
+        assertTrue( source.isEmpty() );
+        assertArrayEquals( new byte[0], source.read() );
+    }
+
+    @Test
+    public void testSizeUnknown()
+    {
+        final StreamingByteSource source = new StreamingByteSource( new ByteArrayInputStream( new byte[]{1} ) );
+
+        assertFalse( source.sizeIfKnown().isPresent() );
+        assertThrows( IOException.class, source::size );
+    }
+
+    @Test
+    public void testSizeKnown()
+        throws Exception
+    {
+        final StreamingByteSource source = new StreamingByteSource( new ByteArrayInputStream( new byte[]{1, 2} ), 2 );
+
+        assertEquals( Optional.of( 2L ), source.sizeIfKnown() );
+        assertEquals( 2, source.size() );
+        assertArrayEquals( new byte[]{1, 2}, source.read() );
+    }
+
+    @Test
+    public void testStreamedSize()
+    {
+        final HttpHeaders plain = HttpHeaders.of( Map.of( "content-length", List.of( "42" ) ), ( name, value ) -> true );
+        final HttpHeaders gzip =
+            HttpHeaders.of( Map.of( "content-length", List.of( "42" ), "content-encoding", List.of( "gzip" ) ), ( name, value ) -> true );
+        final HttpHeaders none = HttpHeaders.of( Map.of(), ( name, value ) -> true );
+
+        assertEquals( 42, HttpRequestHandler.streamedSize( "GET", 200, plain ) );
+        // decoded, the Content-Length is of the encoded body
+        assertEquals( -1, HttpRequestHandler.streamedSize( "GET", 200, gzip ) );
+        assertEquals( -1, HttpRequestHandler.streamedSize( "GET", 200, none ) );
+        assertEquals( 0, HttpRequestHandler.streamedSize( "HEAD", 200, plain ) );
+        assertEquals( 0, HttpRequestHandler.streamedSize( "GET", 304, plain ) );
+    }
+}
@@ -1,17 +1,23 @@
 package com.enonic.lib.http.client;
 
+import java.net.HttpCookie;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class UtilsTest
 {
@@ -116,6 +122,55 @@ public class UtilsTest
         assertNull( Utils.guessTextCharset( HttpHeaders.of( Map.of( "content-type", List.of( "image/gif" ) ), ( s, s2 ) -> true ) ) );
     }
 
+    @Test
+    public void hopByHopHeaders()
+    {
+        assertTrue( Utils.hopByHopHeaders( HttpHeaders.of( Map.of(), ( s, s2 ) -> true ) ).contains( "transfer-encoding" ) );
+
+        final Set<String> headers = Utils.hopByHopHeaders(
+            HttpHeaders.of( Map.of( "connection", List.of( "close, X-Custom" ) ), ( s, s2 ) -> true ) );
+        assertTrue( headers.contains( "x-custom" ) );
+        assertTrue( headers.contains( "keep-alive" ) );
+        assertFalse( headers.contains( "content-length" ) );
+    }
+
+    @Test
+    public void getCookies()
+    {
+        final HttpResponse<?> response = mockResponse( "http://example.com/docs/page", Map.of( "Set-Cookie", List.of(
+            "a=b; Path=/; Secure; HttpOnly", "c=d", "c=e", "x=y; Max-Age=0" ) ) );
+
+        final List<HttpCookie> cookies = Utils.getCookies( response );
+        assertEquals( 2, cookies.size() );
+
+        assertEquals( "a", cookies.get( 0 ).getName() );
+        assertEquals( "b", cookies.get( 0 ).getValue() );
+        assertEquals( "/", cookies.get( 0 ).getPath() );
+        assertEquals( "example.com", cookies.get( 0 ).getDomain() );
+        assertTrue( cookies.get( 0 ).getSecure() );
+        assertTrue( cookies.get( 0 ).isHttpOnly() );
+
+        assertEquals( "c", cookies.get( 1 ).getName() );
+        assertEquals( "e", cookies.get( 1 ).getValue() );
+        assertEquals( "/docs/", cookies.get( 1 ).getPath() );
+    }
+
+    @Test
+    public void getCookies_none()
+    {
+        assertTrue( Utils.getCookies( mockResponse( "http://localhost", Map.of( "content-type", List.of( "text/plain" ) ) ) ).isEmpty() );
+        assertEquals( "localhost.local",
+                      Utils.getCookies( mockResponse( "http://localhost", Map.of( "set-cookie", List.of( "a=b" ) ) ) ).get( 0 ).getDomain() );
+    }
+
+    private static HttpResponse<?> mockResponse( final String uri, final Map<String, List<String>> headers )
+    {
+        final HttpRequest request = HttpRequest.newBuilder( URI.create( uri ) ).build();
+        final HttpResponse<?> response = Mockito.mock( HttpResponse.class );
+        Mockito.when( response.request() ).thenReturn( request );
+        Mockito.when( response.headers() ).thenReturn( HttpHeaders.of( headers, ( s, s2 ) -> true ) );
+        return response;
+    }
 
     private static HttpResponse.ResponseInfo createResponseInfo( final int statusCode, Map<String, List<String>> headers )
     {
@@ -255,6 +255,40 @@ exports.getWithResponseTimeout = function (mockServer) {
     }
 };
 
+exports.getWithTotalTimeout = function (mockServer) {
+
+    var start = Date.now();
+    try {
+        http.request({
+            url: 'http://' + mockServer + '/my/url',
+            method: 'get',
+            readTimeout: 5000,
+            totalTimeout: 1000
+        });
+        assert.assertTrue(false, 'Expected exception');
+
+    } catch (e) {
+        assert.assertEquals('Request deadline exceeded', e.message);
+    }
+    assert.assertTrue(Date.now() - start < 5000, 'Deadline not enforced');
+};
+
+exports.getWithHeadersTimeout = function (mockServer) {
+
+    try {
+        http.request({
+            url: 'http://' + mockServer + '/my/url',
+            method: 'get',
+            connectionTimeout: 10000,
+            headersTimeout: 500
+        });
+        assert.assertTrue(false, 'Expected exception');
+
+    } catch (e) {
+        assert.assertEquals("Couldn't receive headers on time", e.message);
+    }
+};
+
 exports.getWithConnectTimeout = function (mockServer) {
 
     try {
@@ -385,4 +419,374 @@ exports.requestWithSoapResponse = function (mockServer) {
     assert.assertJsonEquals(expectedJson, result, 'http.request result not equals');
     assert.assertNotNull(result.bodyStream, 'http.request stream body null');
 
-};
\ No newline at end of file
+};
+exports.streamBodyMode = function (mockServer) {
+
+    var result = http.request({
+        url: 'http://' + mockServer + '/my/url',
+        method: 'get',
+        bodyMode: 'stream'
+    });
+
+    assert.assertEquals(200, result.status);
+    assert.assertEquals('text/plain', result.contentType);
+    assert.assertNull(result.body, 'body must not be read in stream mode');
+    assert.assertEquals('GET request streamed', testInstance.readStream(result.bodyStream));
+
+    try {
+        testInstance.readStream(result.bodyStream);
+        assert.assertTrue(false, 'Expected exception');
+    } catch (e) {
+        assert.assertEquals('Response body stream can only be read once', e.message);
+    }
+};
+
+exports.bodyModes = function (mockServer) {
+
+    var none = http.request({
+        url: 'http://' + mockServer + '/my/url',
+        bodyMode: 'none'
+    });
+    assert.assertEquals(200, none.status);
+    assert.assertNull(none.body, 'body must be discarded');
+    assert.assertNull(none.bodyStream, 'bodyStream must be discarded');
+
+    var bytes = http.request({
+        url: 'http://' + mockServer + '/my/url',
+        bodyMode: 'bytes'
+    });
+    assert.assertNull(bytes.body, 'body must not be decoded');
+    assert.assertEquals('{"a":1}', testInstance.readStream(bytes.bodyStream));
+
+    var string = http.request({
+        url: 'http://' + mockServer + '/my/url',
+        bodyMode: 'string'
+    });
+    assert.assertEquals('binary', string.body);
+};
+
+exports.jsonBodyMode = function (mockServer) {
+
+    var result = http.request({
+        url: 'http://' + mockServer + '/my/url',
+        bodyMode: 'json'
+    });
+
+    assert.assertJsonEquals({'a': 1, 'b': [true, null, 'c'], 'd': {'e': 2.5}}, result.body, 'json body not equals');
+};
+
+exports.jsonBodyModeMalformed = function (mockServer) {
+
+    try {
+        http.request({
+            url: 'http://' + mockServer + '/my/url',
+            bodyMode: 'json'
+        });
+        assert.assertTrue(false, 'Expected exception');
+
+    } catch (e) {
+        assert.assertTrue(e.message.indexOf("Leading zero in number '01'") >= 0, e.message);
+    }
+};
+
+exports.streamNdjson = function (mockServer) {
+
+    var events = [];
+    var lines = [];
+    var bytes = 0;
+    var result = http.stream({
+        url: 'http://' + mockServer + '/my/url'
+    }, {
+        onEvent: function (event) {
+            events.push(event.data);
+        },
+        onLine: function (line) {
+            lines.push(line);
+        },
+        onChunk: function (chunk) {
+            bytes += testInstance.readStream(chunk).length;
+        }
+    });
+
+    assert.assertEquals(200, result.status);
+    assert.assertNull(result.bodyStream, 'body is consumed by the callbacks');
+    assert.assertJsonEquals([{'a': 1}, {'b': [true, 'c']}], events, 'events not equals');
+    assert.assertEquals(3, lines.length);
+    assert.assertEquals('', lines[1]);
+    assert.assertEquals(25, bytes);
+};
+
+exports.streamStop = function (mockServer) {
+
+    var lines = [];
+    http.stream({
+        url: 'http://' + mockServer + '/my/url'
+    }, {
+        onLine: function (line) {
+            lines.push(line);
+            return lines.length < 2;
+        }
+    });
+
+    assert.assertEquals(2, lines.length);
+    assert.assertEquals('line 2', lines[1]);
+};
+
+exports.maxResponseBytes = function (mockServer) {
+
+    var result = http.request({
+        url: 'http://' + mockServer + '/my/url',
+        maxResponseBytes: 11
+    });
+    assert.assertEquals('GET request', result.body);
+
+    ['auto', 'none', 'stream'].forEach(function (bodyMode) {
+        try {
+            var response = http.request({
+                url: 'http://' + mockServer + '/my/url',
+                bodyMode: bodyMode,
+                maxResponseBytes: 10
+            });
+            if (response.bodyStream) {
+                testInstance.readStream(response.bodyStream);
+            }
+            assert.assertTrue(false, 'Expected exception for ' + bodyMode);
+        } catch (e) {
+            assert.assertEquals('Response body exceeds maxResponseBytes limit of 10 bytes', e.message);
+        }
+    });
+};
+
+exports.multipartKnownLength = function (mockServer) {
+
+    var result = http.request({
+        url: 'http://' + mockServer + '/upload',
+        method: 'POST',
+        multipart: [
+            {
+                name: 'file',
+                fileName: 'data.bin',
+                contentType: 'application/octet-stream',
+                value: testInstance.getImageStream()
+            },
+            {
+                name: 'category',
+                value: 'images'
+            }
+        ]
+    });
+
+    assert.assertEquals(200, result.status);
+};
+
+exports.multipartStreamedKnownLength = function (mockServer) {
+
+    var download = http.request({
+        url: 'http://' + mockServer + '/download',
+        bodyMode: 'stream'
+    });
+
+    var result = http.request({
+        url: 'http://' + mockServer + '/upload',
+        method: 'POST',
+        multipart: [
+            {
+                name: 'file',
+                fileName: 'data.bin',
+                contentType: 'application/octet-stream',
+                value: download.bodyStream
+            }
+        ]
+    });
+
+    assert.assertEquals(200, result.status);
+};
+
+exports.multipartUnknownLength = function (mockServer) {
+
+    var result = http.request({
+        url: 'http://' + mockServer + '/upload',
+        method: 'POST',
+        multipart: [
+            {
+                name: 'file',
+                fileName: 'data.bin',
+                contentType: 'application/octet-stream',
+                value: testInstance.getUnknownSizeStream()
+            },
+            {
+                name: 'category',
+                value: 'images'
+            }
+        ]
+    });
+
+    assert.assertEquals(200, result.status);
+};
+
+exports.compressBody = function (mockServer, body) {
+
+    ['gzip', 'deflate', 'zstd'].forEach(function (compressBody) {
+        var result = http.request({
+            url: 'http://' + mockServer + '/index',
+            method: 'POST',
+            contentType: 'application/json',
+            body: body,
+            compressBody: compressBody
+        });
+        assert.assertEquals(200, result.status);
+    });
+
+    http.request({
+        url: 'http://' + mockServer + '/index',
+        method: 'POST',
+        body: 'small',
+        compressBody: 'gzip'
+    });
+};
+
+exports.compressMultipartBody = function (mockServer, text) {
+
+    var result = http.request({
+        url: 'http://' + mockServer + '/upload',
+        method: 'POST',
+        multipart: [
+            {
+                name: 'text',
+                value: text
+            },
+            {
+                name: 'file',
+                fileName: 'image.png',
+                contentType: 'image/png',
+                value: testInstance.getImageStream()
+            }
+        ],
+        compressBody: 'gzip'
+    });
+
+    assert.assertEquals(200, result.status);
+};
+
+exports.decodeResponse = function (mockServer) {
+
+    var result = http.request({
+        url: 'http://' + mockServer + '/my/url'
+    });
+
+    assert.assertEquals('decoded body', result.body);
+    assert.assertTrue(result.headers['content-encoding'] === undefined, 'content-encoding must be removed from decoded response');
+};
+
+exports.downloadToFile = function (mockServer, path, sha256) {
+
+    var result = http.download({
+        url: 'http://' + mockServer + '/file'
+    }, path);
+
+    assert.assertEquals(200, result.status);
+    assert.assertNull(result.bodyStream, 'body is written to the sink');
+    assert.assertEquals(18, result.size);
+    assert.assertEquals(sha256, result.sha256);
+};
+
+exports.downloadSegments = function (mockServer, path, sha256, size) {
+
+    var result = http.download({
+        url: 'http://' + mockServer + '/file',
+        segments: 4
+    }, path);
+
+    assert.assertEquals(200, result.status);
+    assert.assertEquals(size, result.size);
+    assert.assertEquals(sha256, result.sha256);
+};
+
+exports.metrics = function (mockServer, destinationKey) {
+
+    http.request({
+        url: 'http://' + mockServer + '/my/uri',
+        method: 'POST',
+        body: 'abc'
+    });
+    http.request({
+        url: 'http://' + mockServer + '/missing'
+    });
+
+    var destination = http.metrics().destinations.filter(function (d) {
+        return d.destination === destinationKey;
+    })[0];
+
+    assert.assertEquals(2, destination.requests);
+    assert.assertEquals(1, destination.responses['2xx']);
+    assert.assertEquals(1, destination.responses['4xx']);
+    assert.assertEquals(0, destination.errors);
+    assert.assertEquals(3, destination.bytesOut);
+    assert.assertEquals(21, destination.bytesIn);
+    assert.assertEquals(2, destination.latency.count);
+};
+
+exports.timings = function (mockServer) {
+
+    var result = http.request({
+        url: 'http://' + mockServer + '/my/url',
+        timings: true
+    });
+
+    var t = result.timings;
+    assert.assertEquals('GET request', result.body);
+    assert.assertTrue(t.requestBuilt <= t.clientReady, 'client after request');
+    assert.assertTrue(t.clientReady <= t.headers, 'headers after client');
+    assert.assertTrue(t.headers <= t.firstByte, 'first byte after headers');
+    assert.assertTrue(t.firstByte <= t.bodyRead, 'body read after first byte');
+    assert.assertTrue(t.bodyRead <= t.mapped, 'mapped after body read');
+    assert.assertTrue(t.sent !== undefined, 'sent');
+    assert.assertTrue(t.spillStarted === undefined, 'body not spilled');
+
+    var untimed = http.request({
+        url: 'http://' + mockServer + '/my/url'
+    });
+    assert.assertTrue(untimed.timings === undefined, 'timings not requested');
+};
+
+exports.cachedClients = function (mockServer, destinationKey) {
+
+    http.request({
+        url: 'http://' + mockServer + '/my/url',
+        connectionTimeout: 12345
+    });
+
+    var client = http.cachedClients().filter(function (c) {
+        return c.identity.indexOf('connectTimeout=12345ms') === 0;
+    })[0];
+
+    assert.assertEquals(destinationKey, client.destinations[0].destination);
+    assert.assertEquals(0, client.destinations[0].inFlight);
+    assert.assertTrue(http.evictClient(client.id), 'evicted');
+    assert.assertTrue(!http.evictClient(client.id), 'already evicted');
+    assert.assertTrue(http.flushClients() >= 0, 'flushed');
+};
+
+exports.downloadToFunction = function (mockServer, md5) {
+
+    var content;
+    var result = http.download({
+        url: 'http://' + mockServer + '/file',
+        checksum: 'md5'
+    }, function (stream) {
+        content = testInstance.readStream(stream);
+    });
+
+    assert.assertEquals('downloaded content', content);
+    assert.assertEquals(18, result.size);
+    assert.assertEquals(md5, result.md5);
+
+    var notFound = http.download({
+        url: 'http://' + mockServer + '/missing'
+    }, function (stream) {
+        throw 'Sink must not be called for unsuccessful response';
+    });
+
+    assert.assertEquals(404, notFound.status);
+    assert.assertTrue(notFound.size === undefined, 'no size for unsuccessful response');
+};